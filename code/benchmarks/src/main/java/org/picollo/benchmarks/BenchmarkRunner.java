@@ -0,0 +1,36 @@
+/*
+ * BenchmarkRunner.java
+ */
+package org.picollo.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the JMH command line options, writing the results as JSON to jmh-result.json unless
+ * another result format or file is given, so runs can be compared to catch regressions.
+ * @author rod
+ * @since 2026-10
+ */
+public final class BenchmarkRunner {
+    private static final String RESULT = "jmh-result.json";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final CommandLineOptions cmd = new CommandLineOptions(args);
+        final ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd);
+
+        if (!cmd.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cmd.getResult().hasValue()) {
+            options.result(RESULT);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * DeployProcessorBenchmark.java
+ */
+package org.picollo.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.picollo.service.rest.DeployProcessor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Module upload to the deployment directory and module download, without the servlet container.
+ * @author rod
+ * @since 2026-10
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeployProcessorBenchmark {
+    private static final int MODULES = 10;
+    private static final String UPLOADED = "uploaded.jar";
+
+    @Param({"1", "64", "1024"})
+    private int sizeKb;
+    private PicolloFixture fixture;
+    private DeployProcessor deployProcessor;
+    private byte[] content;
+    private String moduleName;
+    private String etag;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = new PicolloFixture(sizeKb, 8);
+        fixture.deploy(MODULES);
+        deployProcessor = fixture.bean(DeployProcessor.class);
+        moduleName = SyntheticBundles.symbolicName(0);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        fixture.bundles().write(out, MODULES, "1.0.0");
+        content = out.toByteArray();
+
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        deployProcessor.downloadFile(moduleName, downloadRequest(), response);
+        etag = response.getHeader(HttpHeaders.ETAG);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        RequestContextHolder.resetRequestAttributes();
+        fixture.close();
+    }
+
+    /**
+     * Streams a module through the staging area into a deployment job.
+     */
+    @Benchmark
+    public Object store() {
+        final MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/modules/deploy/" + UPLOADED);
+        request.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        request.setContent(content);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        return deployProcessor.uploadStream(UPLOADED, null, 0, request);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse download() throws IOException {
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        deployProcessor.downloadFile(moduleName, downloadRequest(), response);
+        return response;
+    }
+
+    /**
+     * Download revalidated with the ETag of the module, answered with 304.
+     */
+    @Benchmark
+    public MockHttpServletResponse downloadNotModified() {
+        final MockHttpServletRequest request = downloadRequest();
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        deployProcessor.downloadFile(moduleName, request, response);
+        return response;
+    }
+
+    private MockHttpServletRequest downloadRequest() {
+        return new MockHttpServletRequest("GET", "/modules/download/" + moduleName);
+    }
+}
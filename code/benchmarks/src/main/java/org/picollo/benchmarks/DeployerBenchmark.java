@@ -0,0 +1,80 @@
+/*
+ * DeployerBenchmark.java
+ */
+package org.picollo.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.picollo.service.Deployer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deployment directory scans and module upgrades. The files are placed in the deployment directory before each
+ * invocation, outside the measured time.
+ * @author rod
+ * @since 2026-10
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeployerBenchmark {
+    @Param({"10", "100", "1000", "5000"})
+    private int count;
+    @Param({"1", "64"})
+    private int sizeKb;
+    @Param({"8", "128"})
+    private int headers;
+    private PicolloFixture fixture;
+    private Deployer deployer;
+    private Path upgrade;
+    private int version;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = new PicolloFixture(sizeKb, headers);
+        fixture.deploy(count);
+        deployer = fixture.bean(Deployer.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    /**
+     * Drops the deployed modules again, the scan finds them unchanged and discards them.
+     */
+    @Setup(Level.Invocation)
+    public void dropModules() throws IOException {
+        for (int i = 0; i < count; i++) {
+            final String fileName = SyntheticBundles.fileName(i);
+            final Path target = fixture.deployDirectory().resolve(fileName);
+            Files.deleteIfExists(target);
+            Files.createLink(target, fixture.customDirectory().resolve(fileName));
+        }
+        upgrade = fixture.bundles().write(fixture.deployDirectory(), ++version % count, "2.0." + version);
+    }
+
+    /**
+     * Full scan of the deployment directory, every module but one is unchanged.
+     */
+    @Benchmark
+    public void scan() {
+        deployer.deploy();
+    }
+
+    /**
+     * Side by side upgrade of a single module.
+     */
+    @Benchmark
+    public void upgrade() {
+        deployer.deploy(Collections.singleton(upgrade));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * ManifestBenchmark.java
+ */
+package org.picollo.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.picollo.service.bundle.BundleDescriptor;
+import org.picollo.service.bundle.ManifestReader;
+import org.picollo.service.bundle.ModuleEntry;
+import org.picollo.service.bundle.ModuleRegistry;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+
+/**
+ * Manifest reading and module lookup, the work the deployer repeats for every file of every scan.
+ * @author rod
+ * @since 2026-10
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ManifestBenchmark {
+    @Param({"10", "100", "1000", "5000"})
+    private int count;
+    @Param({"1", "64"})
+    private int sizeKb;
+    @Param({"8", "128"})
+    private int headers;
+    private PicolloFixture fixture;
+    private ManifestReader manifestReader;
+    private ModuleRegistry moduleRegistry;
+    private Path[] files;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = new PicolloFixture(sizeKb, headers);
+        fixture.deploy(count);
+        manifestReader = fixture.bean(ManifestReader.class);
+        moduleRegistry = fixture.bean(ModuleRegistry.class);
+        files = new Path[count];
+        for (int i = 0; i < count; i++) {
+            files[i] = fixture.customDirectory().resolve(SyntheticBundles.fileName(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    /**
+     * Driver type of a module through the descriptor cache, the steady state of the deployment scan.
+     */
+    @Benchmark
+    public String driverType() throws IOException {
+        return manifestReader.read(file()).getDriverType();
+    }
+
+    /**
+     * Driver type of a module parsed from the jar, the cost of a module seen for the first time.
+     */
+    @Benchmark
+    public String driverTypeUncached() throws IOException {
+        try (JarFile jarFile = new JarFile(file().toFile(), false)) {
+            return BundleDescriptor.of(jarFile.getManifest()).getDriverType();
+        }
+    }
+
+    /**
+     * Installed module lookup by Bundle-Name, as done by the deployer to find the module being replaced.
+     */
+    @Benchmark
+    public Optional<ModuleEntry> lookup() {
+        return moduleRegistry.findByBundleName(SyntheticBundles.symbolicName(ThreadLocalRandom.current().nextInt(count)));
+    }
+
+    private Path file() {
+        return files[ThreadLocalRandom.current().nextInt(count)];
+    }
+}
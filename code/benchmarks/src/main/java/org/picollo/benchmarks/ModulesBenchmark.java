@@ -0,0 +1,85 @@
+/*
+ * ModulesBenchmark.java
+ */
+package org.picollo.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.picollo.service.rest.ModulesProcessor;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Module listing, paged and revalidated listing and single module queries of the modules actuator endpoint.
+ * @author rod
+ * @since 2026-10
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModulesBenchmark {
+    private static final int PAGE = 50;
+
+    @Param({"10", "100", "1000", "5000"})
+    private int count;
+    private PicolloFixture fixture;
+    private ModulesProcessor modulesProcessor;
+    private MockHttpServletRequest request;
+    private String etag;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = new PicolloFixture(1, 8);
+        fixture.deploy(count);
+        modulesProcessor = fixture.bean(ModulesProcessor.class);
+        request = (MockHttpServletRequest) fixture.bean(HttpServletRequest.class);
+        modulesProcessor.modules(null, null, null, null, null, null);
+        etag = fixture.bean(HttpServletResponse.class).getHeader(HttpHeaders.ETAG);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Benchmark
+    public WebEndpointResponse<List<Map<String, String>>> modules() {
+        return modulesProcessor.modules(null, null, null, null, null, null);
+    }
+
+    /**
+     * A page of the listing filtered by name prefix, with the name and state of each module.
+     */
+    @Benchmark
+    public WebEndpointResponse<List<Map<String, String>>> modulesPage() {
+        return modulesProcessor.modules(0, PAGE, "custom", "active", SyntheticBundles.PREFIX, "name,state");
+    }
+
+    /**
+     * Listing revalidated with the current ETag, answered with 304.
+     */
+    @Benchmark
+    public WebEndpointResponse<List<Map<String, String>>> modulesNotModified() {
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        try {
+            return modulesProcessor.modules(null, null, null, null, null, null);
+        } finally {
+            request.removeHeader(HttpHeaders.IF_NONE_MATCH);
+        }
+    }
+
+    @Benchmark
+    public Map<String, String> module() {
+        return modulesProcessor.module(SyntheticBundles.symbolicName(ThreadLocalRandom.current().nextInt(count)));
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * PicolloFixture.java
+ */
+package org.picollo.benchmarks;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.concierge.Factory;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+import org.osgi.framework.launch.Framework;
+import org.picollo.config.service.OSGiConfig;
+import org.picollo.service.BundleDrainer;
+import org.picollo.service.Deployer;
+import org.picollo.service.DeploymentExecutors;
+import org.picollo.service.DeploymentJobs;
+import org.picollo.service.DeploymentJournal;
+import org.picollo.service.DeploymentMetrics;
+import org.picollo.service.DeploymentRecovery;
+import org.picollo.service.DriverStatistics;
+import org.picollo.service.ModuleActivation;
+import org.picollo.service.ModuleExecutors;
+import org.picollo.service.ModuleOperations;
+import org.picollo.service.ModuleReplicator;
+import org.picollo.service.ModuleWarmUp;
+import org.picollo.service.StagingArea;
+import org.picollo.service.bundle.BundleStore;
+import org.picollo.service.bundle.BundleValidator;
+import org.picollo.service.bundle.ContentDigests;
+import org.picollo.service.bundle.ManifestReader;
+import org.picollo.service.bundle.ModuleRegistry;
+import org.picollo.service.rest.DeployProcessor;
+import org.picollo.service.rest.ModulesProcessor;
+import org.picollo.shutdown.ShutdownCoordinator;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Runs the deployment services of the core against an embedded Concierge framework in a scratch directory, the same
+ * beans the application wires but without the web server, the watcher or the scheduled polling. The deployer is
+ * started as on application ready, restoring the journal and consuming the deployment jobs.
+ * @author rod
+ * @since 2026-10
+ */
+final class PicolloFixture implements AutoCloseable {
+    private static final long STOP_TIMEOUT = 30000;
+
+    private final Path workspace;
+    private final Path deployDirectory;
+    private final Path customDirectory;
+    private final SyntheticBundles bundles;
+    private final Framework framework;
+    private final AnnotationConfigApplicationContext context;
+
+    /**
+     * @param sizeKb kilobytes of content in each generated module.
+     * @param headers extra headers and exported packages in each generated manifest.
+     * @throws IOException when the scratch directory cannot be created.
+     * @throws BundleException when the framework cannot be started.
+     */
+    PicolloFixture(final int sizeKb, final int headers) throws IOException, BundleException {
+        workspace = Files.createTempDirectory("picollo-bench");
+        deployDirectory = Files.createDirectories(workspace.resolve("deploy"));
+        customDirectory = Files.createDirectories(workspace.resolve("custom-modules"));
+        bundles = new SyntheticBundles(sizeKb, headers);
+
+        final Map<String, String> config = new HashMap<>();
+        config.put(Constants.FRAMEWORK_STORAGE, workspace.resolve("osgi").toString());
+        config.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+        framework = new Factory().newFramework(config);
+        framework.init();
+        framework.start();
+        OSGiConfig.osgi = framework;
+
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmarks", properties()));
+        context.registerBean(SimpleMeterRegistry.class);
+        context.registerBean(HttpServletRequest.class, () -> new MockHttpServletRequest("GET", "/"));
+        context.registerBean(HttpServletResponse.class, MockHttpServletResponse::new);
+        context.register(ManifestReader.class, ContentDigests.class, BundleStore.class, BundleValidator.class, ModuleRegistry.class,
+            BundleDrainer.class, DeploymentExecutors.class, DeploymentMetrics.class, DeploymentJobs.class,
+            DeploymentJournal.class, DeploymentRecovery.class, StagingArea.class, Deployer.class, ModuleOperations.class, ModuleWarmUp.class, ModuleReplicator.class,
+            DriverStatistics.class, ModuleActivation.class, ModuleExecutors.class,
+            ModulesProcessor.class, DeployProcessor.class, ShutdownCoordinator.class);
+        context.refresh();
+        bean(Deployer.class).startWatching();
+    }
+
+    private Map<String, Object> properties() {
+        final Map<String, Object> ret = new HashMap<>();
+
+        ret.put("application.deployment-directory", deployDirectory.toString());
+        ret.put("application.core-modules", workspace.resolve("core-modules").toString());
+        ret.put("application.service-modules", workspace.resolve("service-modules").toString());
+        ret.put("application.custom-modules", customDirectory.toString());
+        ret.put("application.staging-directory", workspace.resolve("staging").toString());
+        ret.put("application.bundle-store", workspace.resolve("bundles").toString());
+        ret.put("application.deployer.journal", workspace.resolve("deployments.journal").toString());
+        ret.put("application.deployer.watch", "false");
+        ret.put("application.deployer.initial-delay", String.valueOf(Long.MAX_VALUE / 2));
+        return ret;
+    }
+
+    <T> T bean(final Class<T> type) {
+        return context.getBean(type);
+    }
+
+    SyntheticBundles bundles() {
+        return bundles;
+    }
+
+    Path deployDirectory() {
+        return deployDirectory;
+    }
+
+    Path customDirectory() {
+        return customDirectory;
+    }
+
+    /**
+     * Generates the modules into the deployment directory and deploys them.
+     * @param count number of modules.
+     * @throws IOException when the modules cannot be written.
+     */
+    void deploy(final int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            bundles.write(deployDirectory, i, "1.0.0");
+        }
+        bean(Deployer.class).deploy();
+    }
+
+    /**
+     * Stops the context and the framework and deletes the scratch directory. An interrupt while waiting for the
+     * framework to stop is kept on the thread and the cleanup goes on.
+     * @throws IOException when the scratch directory cannot be listed.
+     * @throws BundleException when the framework cannot be stopped.
+     */
+    @Override
+    public void close() throws IOException, BundleException {
+        context.close();
+        framework.stop();
+        try {
+            framework.waitForStop(STOP_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        OSGiConfig.osgi = null;
+        try (Stream<Path> files = Files.walk(workspace)) {
+            files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * SyntheticBundles.java
+ */
+package org.picollo.benchmarks;
+
+import org.osgi.framework.Constants;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * Generates module jars for the benchmarks. The content size and the manifest complexity are configurable: every
+ * module exports a number of packages, imports the packages of its predecessor as optional imports so it always
+ * resolves, and carries extra headers to make the manifest larger.
+ * @author rod
+ * @since 2026-10
+ */
+final class SyntheticBundles {
+    static final String PREFIX = "bench.module.";
+    static final String DRIVER_TYPE = "Driver-Type";
+    private static final String PADDING = "padding.bin";
+
+    private final int sizeKb;
+    private final int headers;
+    private final Random random = new Random(42);
+
+    /**
+     * @param sizeKb kilobytes of incompressible content in each module.
+     * @param headers extra headers and exported packages in each manifest.
+     */
+    SyntheticBundles(final int sizeKb, final int headers) {
+        this.sizeKb = sizeKb;
+        this.headers = headers;
+    }
+
+    static String symbolicName(final int index) {
+        return PREFIX + index;
+    }
+
+    static String fileName(final int index) {
+        return symbolicName(index) + ".jar";
+    }
+
+    /**
+     * Writes a module jar.
+     * @param directory target directory.
+     * @param index module number, the module is named after it.
+     * @param version module version.
+     * @return the module file.
+     * @throws IOException when the jar cannot be written.
+     */
+    Path write(final Path directory, final int index, final String version) throws IOException {
+        final Path file = directory.resolve(fileName(index));
+
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(out, index, version);
+        }
+        return file;
+    }
+
+    /**
+     * Writes a module jar to a stream.
+     * @param out target stream.
+     * @param index module number, the module is named after it.
+     * @param version module version.
+     * @throws IOException when the jar cannot be written.
+     */
+    void write(final OutputStream out, final int index, final String version) throws IOException {
+        try (JarOutputStream jar = new JarOutputStream(out, manifest(index, version))) {
+            final byte[] content = new byte[sizeKb * 1024];
+            random.nextBytes(content);
+            final CRC32 crc = new CRC32();
+            crc.update(content);
+            final JarEntry entry = new JarEntry(PADDING);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(content.length);
+            entry.setCrc(crc.getValue());
+            jar.putNextEntry(entry);
+            jar.write(content);
+            jar.closeEntry();
+        }
+    }
+
+    private Manifest manifest(final int index, final String version) {
+        final Manifest ret = new Manifest();
+        final Attributes attributes = ret.getMainAttributes();
+        final StringBuilder exports = new StringBuilder();
+        final StringBuilder imports = new StringBuilder("org.osgi.framework");
+
+        for (int i = 0; i < headers; i++) {
+            exports.append(i == 0 ? "" : ",").append(symbolicName(index)).append(".pkg").append(i)
+                .append(";version=\"").append(version).append('"');
+            if (index > 0) {
+                imports.append(',').append(symbolicName(index - 1)).append(".pkg").append(i)
+                    .append(";resolution:=optional");
+            }
+            attributes.putValue("X-Bench-Header-" + i, "value-" + index + "-" + i);
+        }
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.putValue(Constants.BUNDLE_MANIFESTVERSION, "2");
+        attributes.putValue(Constants.BUNDLE_SYMBOLICNAME, symbolicName(index));
+        attributes.putValue(Constants.BUNDLE_NAME, symbolicName(index));
+        attributes.putValue(Constants.BUNDLE_VERSION, version);
+        attributes.putValue(DRIVER_TYPE, "Custom");
+        attributes.putValue(Constants.IMPORT_PACKAGE, imports.toString());
+        if (exports.length() > 0) {
+            attributes.putValue(Constants.EXPORT_PACKAGE, exports.toString());
+        }
+        return ret;
+    }
+}
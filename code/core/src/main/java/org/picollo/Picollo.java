@@ -5,6 +5,7 @@ package org.picollo;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.ApplicationPidFileWriter;
@@ -32,8 +33,16 @@ public class Picollo {
         log.info("Picollo started...");
     }
 
+    /**
+     * Scheduler shared by the scheduled tasks of the node. Deployments run on their own executor, see
+     * {@link org.picollo.service.DeploymentExecutors}.
+     */
     @Bean
-    public TaskScheduler threadPoolTaskScheduler() {
-        return new ThreadPoolTaskScheduler();
+    public TaskScheduler threadPoolTaskScheduler(@Value("${application.scheduler.pool-size:4}") final int poolSize) {
+        final ThreadPoolTaskScheduler ret = new ThreadPoolTaskScheduler();
+
+        ret.setPoolSize(poolSize);
+        ret.setThreadNamePrefix("picollo-scheduler-");
+        return ret;
     }
 }
\ No newline at end of file
@@ -0,0 +1,122 @@
+/*
+ * BundleDrainer.java
+ */
+package org.picollo.service;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.FrameworkEvent;
+import org.picollo.context.PicolloContext;
+import org.picollo.driver.DriverInterface;
+import org.picollo.driver.DriverState;
+import org.picollo.service.bundle.ModuleRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Takes a bundle out of service before it is replaced: the bundle is stopped so its driver stops accepting work,
+ * the deployer then waits for the running execution to finish and for the framework to report the bundle gone.
+ * Every wait is bounded by the drain deadline.
+ * @author rod
+ * @since 2026-10
+ */
+@Component
+public class BundleDrainer {
+    private static final Logger log = LoggerFactory.getLogger(BundleDrainer.class);
+    private static final long MIN_BACKOFF = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long MAX_BACKOFF = TimeUnit.MILLISECONDS.toNanos(250);
+    @Value("${application.deployer.drain-timeout:60000}")
+    private long drainTimeout;
+    @Autowired
+    private ModuleRegistry moduleRegistry;
+
+    /**
+     * Stops the bundle so its driver stops accepting work, without waiting for the running execution.
+     * @param bundle bundle being replaced.
+     * @return the driver of the bundle, to be passed to {@link #awaitDrained(Optional)}.
+     * @throws BundleException when the bundle cannot be stopped.
+     */
+    public Optional<DriverInterface> signal(final Bundle bundle) throws BundleException {
+        final Optional<DriverInterface> driver = PicolloContext.getDriver(bundle.getSymbolicName());
+
+        bundle.stop();
+        return driver;
+    }
+
+    /**
+     * Waits until the driver of a signalled bundle is no longer running.
+     * @param driver driver returned by {@link #signal(Bundle)}.
+     * @throws InterruptedException when the deployment thread is interrupted.
+     */
+    public void awaitDrained(final Optional<DriverInterface> driver) throws InterruptedException {
+        if (driver.isPresent() && !awaitIdle(driver.get(), drainTimeout)) {
+            log.warn("Driver named {} is still running after {} ms, proceeding with the deployment.", driver.get().getName(), drainTimeout);
+        }
+    }
+
+    /**
+     * Uninstalls the bundle and waits for the framework to refresh its wiring.
+     * @param bundle bundle being replaced.
+     * @throws BundleException when the bundle cannot be uninstalled.
+     * @throws InterruptedException when the deployment thread is interrupted.
+     */
+    public void uninstall(final Bundle bundle) throws BundleException, InterruptedException {
+        bundle.uninstall();
+        refresh(Collections.singleton(bundle));
+    }
+
+    /**
+     * Refreshes the given bundles and waits for the framework to report the refresh has ended.
+     * @param bundles bundles to refresh.
+     * @throws InterruptedException when the deployment thread is interrupted.
+     */
+    public void refresh(final Collection<Bundle> bundles) throws InterruptedException {
+        final CountDownLatch refreshed = new CountDownLatch(1);
+        moduleRegistry.wiring().refreshBundles(bundles, event -> {
+            if (event.getType() == FrameworkEvent.ERROR) {
+                log.error("Error refreshing bundles {}.", bundles, event.getThrowable());
+            }
+            refreshed.countDown();
+        });
+        if (!refreshed.await(drainTimeout, TimeUnit.MILLISECONDS)) {
+            log.warn("Bundles {} have not been refreshed after {} ms, proceeding with the deployment.", bundles, drainTimeout);
+        }
+    }
+
+    /**
+     * Waits for the driver to leave the RUNNING state. The driver interface offers no completion callback, so the
+     * state is checked with a short backoff that grows up to {@link #MAX_BACKOFF}.
+     * @param driver driver of a stopped bundle.
+     * @param timeout maximum wait in milliseconds.
+     * @return false when the driver is still running after the timeout.
+     * @throws InterruptedException when the waiting thread is interrupted.
+     */
+    public static boolean awaitIdle(final DriverInterface driver, final long timeout) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        long backoff = MIN_BACKOFF;
+
+        while (driver.getState() == DriverState.RUNNING) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            log.debug("Waiting for the driver named {} to finish running.", driver.getName());
+            LockSupport.parkNanos(Math.min(backoff, remaining));
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF);
+        }
+        return true;
+    }
+}
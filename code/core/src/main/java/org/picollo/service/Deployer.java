@@ -3,32 +3,61 @@
  */
 package org.picollo.service;
 
+import io.micrometer.core.instrument.Timer;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleException;
-import org.osgi.framework.Constants;
-import org.picollo.config.service.OSGiConfig;
-import org.picollo.context.PicolloContext;
 import org.picollo.driver.DriverInterface;
-import org.picollo.driver.DriverState;
 import org.picollo.driver.DriverType;
+import org.picollo.service.bundle.BundleDescriptor;
+import org.picollo.service.bundle.BundleLocations;
+import org.picollo.service.bundle.BundleStore;
+import org.picollo.service.bundle.BundleValidator;
+import org.picollo.service.bundle.ContentDigests;
+import org.picollo.service.bundle.ManifestReader;
+import org.picollo.service.bundle.ModuleEntry;
+import org.picollo.service.bundle.ModuleRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
-import java.util.jar.Attributes;
-import java.util.jar.JarFile;
-import java.util.jar.Manifest;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -39,7 +68,6 @@ import java.util.stream.Stream;
 @EnableScheduling
 public class Deployer {
     private static final Logger log = LoggerFactory.getLogger(Deployer.class);
-    private static final String DRIVER_TYPE = "Driver-Type";
     @Value("${application.deployment-directory}")
     private String deployDirectory;
     @Value("${application.core-modules}")
@@ -53,165 +81,869 @@ public class Deployer {
     private static final String APPLICATION_CUSTOM_DIRECTORY = "APPLICATION_CUSTOM-MODULES";
     private static final String APPLICATION_CORE_DIRECTORY = "APPLICATION_CORE-MODULES";
     private static final String APPLICATION_SERVICE_DIRECTORY = "APPLICATION_SERVICE-MODULES";
+    @Value("${application.deployer.watch:true}")
+    private boolean watch;
+    @Value("${application.deployer.side-by-side:true}")
+    private boolean sideBySide;
+    @Value("${application.deployer.quiet-period:500}")
+    private long quietPeriod;
+    @Value("${application.deployer.job-batch-size:64}")
+    private int jobBatchSize;
+    @Autowired
+    private ManifestReader manifestReader;
+    @Autowired
+    private ModuleRegistry moduleRegistry;
+    @Autowired
+    private BundleDrainer bundleDrainer;
+    @Autowired
+    private ContentDigests contentDigests;
+    @Autowired
+    private BundleStore bundleStore;
+    @Autowired
+    private BundleValidator bundleValidator;
+    @Autowired
+    private ModuleWarmUp moduleWarmUp;
+    @Autowired
+    private ModuleActivation moduleActivation;
+    @Autowired
+    private DeploymentMetrics deploymentMetrics;
+    @Autowired
+    private DeploymentJobs deploymentJobs;
+    @Autowired
+    private DeploymentJournal deploymentJournal;
+    @Autowired
+    private DeploymentRecovery deploymentRecovery;
+    private DeploymentWatcher watcher;
+    @Autowired
+    @Qualifier("deploymentExecutor")
+    private ExecutorService executor;
+    private ExecutorService scanner;
+    private final AtomicBoolean scanning = new AtomicBoolean();
+    private Thread jobConsumer;
+    private volatile boolean scanned;
+    private volatile boolean suspended;
 
-    @Scheduled(initialDelay = 30000, fixedDelay = 10000)
-    public void deploy() {
+    @PostConstruct
+    public void init() {
         deployDirectory = checkProperty(deployDirectory, APPLICATION_DEPLOYMENT_DIRECTORY);
         customModules = checkProperty(customModules, APPLICATION_CUSTOM_DIRECTORY);
         coreModules = checkProperty(coreModules, APPLICATION_CORE_DIRECTORY);
         serviceModules = checkProperty(serviceModules, APPLICATION_SERVICE_DIRECTORY);
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("picollo-deployer-scan-");
+        threadFactory.setDaemon(true);
+        scanner = Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    /**
+     * Restores the modules recorded in the deployment journal once the application is up, then starts consuming the
+     * deployment jobs and watching the deployment directory, and scans the directory right away. Jobs submitted
+     * before are left queued, so none is deployed over a module set not restored yet. When the file system cannot
+     * deliver watch events the scheduled polling below keeps deploying the modules.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWatching() {
+        recover();
+        startConsumer();
+        if (watch) {
+            watcher = new DeploymentWatcher(Paths.get(deployDirectory), quietPeriod, this::deploy);
+            if (watcher.start()) {
+                log.info("Watching deployment directory {} for new modules.", deployDirectory);
+            }
+        }
+        poll();
+    }
+
+    private synchronized void recover() {
+        try {
+            deploymentRecovery.recover();
+        } catch (InterruptedException e) {
+            log.error("Thread error restoring OSGi bundles, message = {}", e.getMessage(), e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void startConsumer() {
+        if (suspended || jobConsumer != null) {
+            return;
+        }
+        jobConsumer = new Thread(this::consumeJobs, "picollo-deployer-jobs");
+        jobConsumer.setDaemon(true);
+        jobConsumer.start();
+    }
+
+    /**
+     * Deploys the queued deployment jobs, the jobs with the highest priority first.
+     */
+    private void consumeJobs() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                final List<DeploymentJob> jobs = deploymentJobs.take(jobBatchSize);
+                synchronized (this) {
+                    if (suspended) {
+                        return;
+                    }
+                    log.debug("Deploying jobs = {}.", jobs.stream().map(DeploymentJob::getId).collect(Collectors.toList()));
+                    final List<Path> files = jobs.stream().filter(j -> j.getRelease() == null).map(DeploymentJob::file).collect(Collectors.toList());
+                    if (!files.isEmpty()) {
+                        deploy(files);
+                        files.stream().map(Path::getParent).distinct().forEach(this::dropDirectory);
+                    }
+                    jobs.stream()
+                        .filter(j -> j.getRelease() != null)
+                        .collect(Collectors.groupingBy(DeploymentJob::getRelease, LinkedHashMap::new, Collectors.mapping(DeploymentJob::file, Collectors.toList())))
+                        .values()
+                        .forEach(this::deployRelease);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
 
+    /**
+     * Polls the deployment directory. The first run always scans it, picking up files dropped before the watcher
+     * was started, afterwards it only scans when the directory is not being watched. The scan runs on its own thread
+     * so the shared scheduler is never held by a deployment, and a poll is skipped while a scan is running.
+     */
+    @Scheduled(initialDelayString = "${application.deployer.initial-delay:30000}", fixedDelayString = "${application.deployer.poll-interval:10000}")
+    public void poll() {
+        if (suspended || (scanned && watcher != null && watcher.isWatching()) || !scanning.compareAndSet(false, true)) {
+            return;
+        }
+        scanner.execute(() -> {
+            try {
+                deploy();
+                scanned = true;
+            } finally {
+                scanning.set(false);
+            }
+        });
+    }
+
+    /**
+     * Deploys every module found in the deployment directory.
+     */
+    public synchronized void deploy() {
+        if (suspended) {
+            return;
+        }
         try {
             try (Stream<Path> stream = Files.list(Paths.get(deployDirectory))) {
-                stream
-                    .filter(i -> ! i.toString().contains("README.md") && ! i.toString().contains(".DS_Store"))
-                    .forEach(i -> {
-                        final String destination;
-                        final Optional<Bundle> b;
-                        Optional<DriverInterface> driver;
-
-                        try {
-                            Bundle[] b1 = OSGiConfig.osgi.getBundleContext().getBundles();
-                            b = lookup(i.toString(), b1);
-                            if (getDriverType(i.toString()).equals(DriverType.Custom.toString())) {
-                                destination = customModules;
-                            } else if (getDriverType(i.toString()).equals(DriverType.Core.toString())) {
-                                destination = coreModules;
-                            } else {
-                                destination = serviceModules;
-                            }
-                            if (b.isPresent()) {
-                                driver = PicolloContext.getDriver(b.get().getSymbolicName());
-
-                                if (driver.isPresent()) {
-                                    while (driver.get().getState() == DriverState.RUNNING) {
-                                        log.info("Deployment process is waiting, because the driver named {} is currently running.", driver.get().getName());
-                                        Thread.sleep(1000);
-                                    }
-                                }
-                                String newFileDestination = destination + File.separator + i.getFileName();
-                                log.info("Replacing bundle = {}.", i);
-                                b.get().stop();
-                                b.get().uninstall();
-                                Thread.sleep(3000);
-                                Path target = Paths.get(newFileDestination);
-                                Files.move(i, target, StandardCopyOption.REPLACE_EXISTING);
-                                Bundle bn = OSGiConfig.osgi.getBundleContext().installBundle(target.toString());
-                                if (!b.get().getVersion().equals(bn.getVersion()) && Files.exists(Paths.get(b.get().getLocation().substring(7)))) {
-                                    Files.delete(Paths.get(b.get().getLocation().substring(7)));
-                                }
-                                log.debug("bundle old ={}, new={}", b.get().getLocation(), bn.getLocation());
-                                if (!bn.getLocation().equals(b.get().getLocation()) && Files.exists(Paths.get(b.get().getLocation().substring(7)))) {
-                                    Files.delete(Paths.get(b.get().getLocation().substring(7)));
-                                }
-                                bn.start();
-                                log.info("New bundle replaced = {}.", i);
-                            } else {
-                                log.info("New bundle found = {}.", i);
-                                Files.move(i, Paths.get(destination + File.separator + i.getFileName()), StandardCopyOption.REPLACE_EXISTING);
-                                Bundle bn = OSGiConfig.osgi.getBundleContext().installBundle(Paths.get(destination + File.separator + i.getFileName()).toString());
-                                bn.start();
-                                log.info("New bundle started = {}.", i);
-                            }
-                            log.debug("New bundle = {} moved to directory = {}.", i, destination);
-                        } catch (BundleException e) {
-                            log.error("Error deploying custom bundle: {}, message: {}", i, e.getMessage(), e);
-                            try {
-                                Files.delete(i);
-                            } catch (IOException e1) {
-                                log.error("I/O Error deploying bundles, message = {}", e.getMessage(), e);
-                            }
-                        } catch (IOException e) {
-                            log.error("I/O Error deploying OSGi bundles, message = {}", e.getMessage(), e);
-                        } catch (InterruptedException e) {
-                            log.error("Thread error deploying OSGi bundles, message = {}", e.getMessage(), e);
-                        }
-                    });
+                deploy(stream.filter(Deployer::isDeployable).collect(Collectors.toList()));
             }
         } catch (IOException e) {
             log.error("I/O Error deploying OSGi bundles, message = {}", e.getMessage(), e);
         }
     }
 
-    private String getDriverType(String location) {
-        JarFile jarFile = null;
-        Attributes attributes;
-        Manifest manifest;
-        String ret = null;
+    /**
+     * Deploys the given module files as one release. The manifests are read in parallel and every module is
+     * validated against the running bundles and the release, then the new versions are installed in parallel,
+     * resolved together in a single pass, and then switched over wave by wave in dependency order, the
+     * modules of each wave in parallel. A second file of a module already in the release is deployed afterwards.
+     * @param files module files located in the deployment directory or published to a job directory.
+     */
+    public synchronized void deploy(final Collection<Path> files) {
+        final List<ModuleDeployment> release = new ArrayList<>();
+        final List<Path> deferred = new ArrayList<>();
+        final Set<String> modules = new HashSet<>();
 
-        try {
-            jarFile = new JarFile(location);
-            manifest = jarFile.getManifest();
-            attributes = manifest.getMainAttributes();
-            if (attributes.getValue(DRIVER_TYPE) == null || attributes.getValue(DRIVER_TYPE).isEmpty()) {
-                ret = "Core";
+        for (ModuleDeployment d : await(files.stream()
+                .filter(Files::exists)
+                .map(f -> executor.submit(() -> prepare(f)))
+                .collect(Collectors.toList()))) {
+            if (modules.add(moduleKey(d))) {
+                release.add(d);
             } else {
-                ret = attributes.getValue(DRIVER_TYPE);
+                deferred.add(d.getSource());
             }
-            jarFile.close();
-        } catch (IOException e) {
-            log.error("Failed reading bundle attribute driver file: {}", location, e);
-            if (jarFile != null) {
-                try {
-                    jarFile.close();
-                } catch (IOException e1) {
+        }
+        final List<BundleDescriptor> descriptors = release.stream().map(ModuleDeployment::getDescriptor).collect(Collectors.toList());
+        release.removeIf(d -> !validate(d, descriptors));
+        if (!release.isEmpty()) {
+            release(release);
+        }
+        if (!deferred.isEmpty()) {
+            deploy(deferred);
+        }
+    }
+
+    private void release(final List<ModuleDeployment> release) {
+        final List<ModuleDeployment> ahead = release.stream().filter(this::installsAhead).collect(Collectors.toList());
+        final List<ModuleDeployment> installed = parallel(ahead, this::install);
+        final List<ModuleDeployment> ready = release.stream()
+            .filter(d -> !installsAhead(d) || installed.contains(d))
+            .collect(Collectors.toList());
+
+        resolve(installed);
+        for (List<ModuleDeployment> wave : DeploymentPlan.waves(ready)) {
+            log.debug("Switching over bundles = {}.", wave);
+            parallel(wave, this::cutOver);
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Deploys the given module files as one release, all or none. The manifests are read in parallel and the
+     * release is validated as a whole, then every new version is installed, resolved and warmed up before any running
+     * module is touched. The running versions are stopped and the new ones started wave by wave in dependency order,
+     * and the previous versions are only drained and uninstalled once the whole release runs. When a module fails
+     * before that point, the modules already switched over get their previous version back and every module of the
+     * release is rejected.
+     * @param files module files of the release, published to a release directory by the {@link StagingArea}.
+     */
+    public synchronized void deployRelease(final Collection<Path> files) {
+        final List<ModuleDeployment> release = new ArrayList<>();
+        final Deque<ModuleDeployment> switched = new ConcurrentLinkedDeque<>();
+        final Map<ModuleDeployment, Optional<DriverInterface>> drivers = new ConcurrentHashMap<>();
+
+        log.info("Deploying release = {}.", files);
+        try {
+            release.addAll(all(files.stream().filter(Files::exists).collect(Collectors.toList()), this::read));
+            final Set<String> modules = new HashSet<>();
+            for (ModuleDeployment d : release) {
+                if (!modules.add(moduleKey(d))) {
+                    throw new BundleException("Module " + d.getDescriptor() + " is deployed twice in the release.",
+                        BundleException.DUPLICATE_BUNDLE_ERROR);
                 }
             }
+            final List<BundleDescriptor> descriptors = release.stream().map(ModuleDeployment::getDescriptor).collect(Collectors.toList());
+            for (ModuleDeployment d : release) {
+                check(d, descriptors);
+            }
+
+            final List<ModuleDeployment> ahead = release.stream().filter(this::installsAhead).collect(Collectors.toList());
+            all(ahead, d -> {
+                install(d);
+                return d;
+            });
+            resolve(ahead);
+            for (ModuleDeployment d : ahead) {
+                if (d.getInstalled().getState() == Bundle.INSTALLED) {
+                    throw new BundleException("Bundle " + d.getDescriptor() + " cannot be resolved.", BundleException.RESOLVE_ERROR);
+                }
+            }
+            all(ahead, d -> {
+                warmUp(d);
+                return d;
+            });
+            for (List<ModuleDeployment> wave : DeploymentPlan.waves(release)) {
+                log.debug("Switching over bundles = {}.", wave);
+                all(wave, d -> {
+                    switchOver(d, switched, drivers);
+                    return d;
+                });
+            }
+            // The whole release runs, failures from now on are reported by module
+            parallel(release, d -> retire(d, drivers.getOrDefault(d, Optional.empty())));
+            log.info("Release = {} deployed.", files);
+        } catch (BundleException | IOException | RuntimeException e) {
+            rollBack(files, release, switched, e);
+        } catch (InterruptedException e) {
+            rollBack(files, release, switched, e);
+            Thread.currentThread().interrupt();
+        } finally {
+            files.stream().map(Path::getParent).distinct().forEach(this::dropDirectory);
         }
+    }
 
-        return ret == null ? "" : ret;
+    /**
+     * Stops the running version of a module of a release and starts the new one. A module that cannot run beside
+     * its new version is uninstalled before the new version is installed.
+     */
+    private void switchOver(final ModuleDeployment deployment, final Deque<ModuleDeployment> switched,
+                            final Map<ModuleDeployment, Optional<DriverInterface>> drivers)
+            throws BundleException, IOException, InterruptedException {
+        final Bundle previous = deployment.getPrevious();
+
+        if (previous != null) {
+            swapping(previous);
+            switched.push(deployment);
+            drivers.put(deployment, stop(deployment));
+            if (deployment.getInstalled() == null) {
+                drain(deployment, drivers.get(deployment));
+                uninstall(deployment);
+                install(deployment);
+                warmUp(deployment);
+            }
+        }
+        start(deployment);
     }
 
-    private Optional<Bundle> lookup(String location, Bundle[] bs) {
-        Optional<Bundle> r = Optional.empty();
-        JarFile jarFile = null;
-        Manifest manifest;
-        Attributes attributes;
-        String bundleName;
+    /**
+     * Drains and uninstalls the previous version of a module once its whole release runs, and commits the module.
+     */
+    private void retire(final ModuleDeployment deployment, final Optional<DriverInterface> driver)
+            throws BundleException, IOException, InterruptedException {
+        final Bundle previous = deployment.getPrevious();
 
-        try {
-            jarFile = new JarFile(location);
-            if (jarFile == null) {
-                jarFile.close();
-                return r;
+        if (previous != null && previous.getState() != Bundle.UNINSTALLED) {
+            drain(deployment, driver);
+            uninstall(deployment);
+        }
+        commit(deployment);
+        deploymentMetrics.deployed(deployment.getDescriptor());
+        deploymentJobs.succeeded(deployment.getSource(), "Module " + deployment.getDescriptor() + " is running.");
+    }
+
+    /**
+     * Uninstalls the new versions of a failed release, starts again the previous versions already stopped, the
+     * latest first, and rejects every module of the release.
+     */
+    private void rollBack(final Collection<Path> files, final List<ModuleDeployment> release,
+                          final Deque<ModuleDeployment> switched, final Exception cause) {
+        final List<Bundle> aborted = new ArrayList<>();
+
+        log.error("Error deploying release = {}, rolling it back, message = {}", files, cause.getMessage(), cause);
+        for (ModuleDeployment d : release) {
+            if (d.getInstalled() != null) {
+                if (d.getInstalled().getState() != Bundle.UNINSTALLED) {
+                    abort(d);
+                }
+                aborted.add(d.getInstalled());
             }
-            manifest = jarFile.getManifest();
-            if (manifest == null) {
-                jarFile.close();
-                return r;
+        }
+        for (ModuleDeployment d : switched) {
+            final Bundle previous = d.getPrevious();
+            try {
+                final Bundle restored = previous.getState() == Bundle.UNINSTALLED
+                    ? moduleRegistry.context().installBundle(BundleLocations.toPath(previous.getLocation()).toString())
+                    : previous;
+                restored.start();
+                deploymentJournal.installed(restored, null);
+                deploymentMetrics.rolledBack(d.getDescriptor());
+                log.warn("Rolled back bundle = {}, previous version {} started again.", d, previous.getVersion());
+            } catch (BundleException | IllegalStateException e) {
+                log.error("Error rolling back bundle: {}, message: {}", d, e.getMessage(), e);
             }
-            attributes = manifest.getMainAttributes();
-            if (attributes == null) {
-                jarFile.close();
-                return r;
+        }
+        try {
+            if (!aborted.isEmpty()) {
+                bundleDrainer.refresh(aborted);
             }
-            bundleName = attributes.getValue(Constants.BUNDLE_NAME);
-            if (bundleName == null) {
-                jarFile.close();
-                return r;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Path f : files) {
+            if (Files.exists(f)) {
+                deploymentMetrics.failed(descriptor(f));
+                deploymentJobs.failed(f, "Release rolled back: " + cause.getMessage());
+                try {
+                    discard(f);
+                } catch (IOException e) {
+                    log.error("I/O Error discarding bundle {}, message = {}", f, e.getMessage(), e);
+                }
             }
+        }
+    }
 
-            for (Bundle b : bs) {
-                if (bundleName.equals(b.getHeaders().get(Constants.BUNDLE_NAME)) && (b.getState() == Bundle.ACTIVE || b.getState() == Bundle.RESOLVED)) {
-                    r = Optional.of(b);
-                    break;
+    /**
+     * Deletes a job or release directory once its modules have been committed or discarded.
+     */
+    private void dropDirectory(final Path directory) {
+        if (directory == null || directory.toAbsolutePath().normalize().equals(Paths.get(deployDirectory).toAbsolutePath().normalize())) {
+            return;
+        }
+        try (Stream<Path> stream = Files.list(directory)) {
+            if (!stream.findAny().isPresent()) {
+                Files.delete(directory);
+            }
+        } catch (NoSuchFileException e) {
+            log.trace("Upload directory {} already deleted.", directory);
+        } catch (IOException e) {
+            log.warn("I/O Error deleting upload directory {}, message = {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Runs a task for every item on the deployment executor and waits for all of them.
+     * @return the non null results.
+     * @throws BundleException the first failure, once every task has ended.
+     */
+    private <T, R> List<R> all(final Collection<T> items, final Task<T, R> task)
+            throws BundleException, IOException, InterruptedException {
+        final List<Future<R>> futures = items.stream()
+            .map(i -> executor.submit(() -> task.run(i)))
+            .collect(Collectors.toList());
+        final List<R> ret = new ArrayList<>();
+        Throwable failure = null;
+
+        for (Future<R> future : futures) {
+            try {
+                final R result = future.get();
+                if (result != null) {
+                    ret.add(result);
                 }
+            } catch (ExecutionException e) {
+                failure = failure == null ? e.getCause() : failure;
+            } catch (InterruptedException e) {
+                futures.forEach(f -> f.cancel(true));
+                throw e;
             }
-            jarFile.close();
+        }
+        if (failure instanceof BundleException) {
+            throw (BundleException) failure;
+        } else if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof InterruptedException) {
+            throw (InterruptedException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure != null) {
+            throw new BundleException(failure.getMessage(), failure);
+        }
+        return ret;
+    }
+
+    /**
+     * Reads the manifest and digest of a module file.
+     * @return the deployment of the module, or null when it is identical to the deployed version or unreadable.
+     */
+    private ModuleDeployment prepare(final Path i) {
+        try {
+            return read(i);
         } catch (IOException e) {
-            log.error("I/O Error opening jar file", e);
+            failed(i, descriptor(i), e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the manifest of a module file, or null when it cannot be read.
+     */
+    private BundleDescriptor descriptor(final Path i) {
+        try {
+            return manifestReader.read(i);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the deployment of the module, or null when it is identical to the deployed version.
+     * @throws IOException when the module file cannot be read.
+     */
+    private ModuleDeployment read(final Path i) throws IOException {
+        deploymentJobs.phase(i, DeploymentPhase.MANIFEST);
+        final Timer.Sample sample = deploymentMetrics.start();
+        final BundleDescriptor descriptor = manifestReader.read(i);
+        deploymentMetrics.phase(sample, DeploymentPhase.MANIFEST, descriptor);
+        deploymentMetrics.phase(sinceModified(i), DeploymentPhase.DETECTION, descriptor);
+        final Path target = Paths.get(destination(descriptor) + File.separator + i.getFileName());
+        final ModuleDeployment deployment = new ModuleDeployment(i, target, descriptor, contentDigests.sha256(i),
+            lookup(descriptor).orElse(null));
+
+        if (deployment.getPrevious() != null && unchanged(deployment)) {
+            log.info("Bundle = {} is identical to the deployed version, skipping it.", i);
+            discard(i);
+            deploymentJobs.succeeded(i, "The module is identical to the deployed version.");
+            return null;
+        }
+        return deployment;
+    }
+
+    /**
+     * Checks the module before the running version is touched, an invalid module is rejected and discarded.
+     * @param release manifests of the modules of the release.
+     * @return true when the module can be deployed.
+     */
+    private boolean validate(final ModuleDeployment deployment, final Collection<BundleDescriptor> release) {
+        try {
+            check(deployment, release);
+            return true;
+        } catch (BundleException e) {
+            failed(deployment.getSource(), deployment.getDescriptor(), e);
+            return false;
+        }
+    }
+
+    private void check(final ModuleDeployment deployment, final Collection<BundleDescriptor> release) throws BundleException {
+        final Timer.Sample sample = enter(deployment, DeploymentPhase.VALIDATE);
+        try {
+            bundleValidator.validate(deployment.getDescriptor(), deployment.getSha256(), deployment.getPrevious(), release);
+        } finally {
+            deploymentMetrics.phase(sample, DeploymentPhase.VALIDATE, deployment.getDescriptor());
+        }
+    }
+
+    private void cutOver(final ModuleDeployment deployment) throws BundleException, IOException, InterruptedException {
+        final Path i = deployment.getSource();
+
+        if (deployment.getPrevious() == null) {
+            log.info("New bundle found = {}.", i);
+            warmUp(deployment);
+            start(deployment);
+            commit(deployment);
+            log.info("New bundle started = {}.", i);
+        } else if (deployment.getInstalled() != null) {
+            log.info("Upgrading bundle = {} side by side.", i);
+            upgrade(deployment);
+            log.info("New bundle replaced = {}.", i);
+        } else {
+            log.info("Replacing bundle = {}.", i);
+            replace(deployment);
+            log.info("New bundle replaced = {}.", i);
+        }
+        deploymentMetrics.deployed(deployment.getDescriptor());
+        deploymentJobs.succeeded(i, "Module " + deployment.getDescriptor() + " is running.");
+        log.debug("New bundle = {} moved to directory = {}.", i, deployment.getTarget().getParent());
+    }
+
+    /**
+     * @return true when the new version is installed before the running one is touched.
+     */
+    private boolean installsAhead(final ModuleDeployment deployment) {
+        return deployment.getPrevious() == null || (sideBySide && deployment.canRunSideBySide());
+    }
+
+    /**
+     * Runs a step for every deployment on the deployment executor.
+     * @return the deployments the step has succeeded for.
+     */
+    private List<ModuleDeployment> parallel(final Collection<ModuleDeployment> deployments, final Step step) {
+        return await(deployments.stream()
+            .map(d -> executor.submit(() -> attempt(d, step) ? d : null))
+            .collect(Collectors.toList()));
+    }
+
+    private <T> List<T> await(final List<Future<T>> futures) {
+        final List<T> ret = new ArrayList<>();
+
+        for (Future<T> future : futures) {
             try {
-                if (jarFile != null)
-                    jarFile.close();
-            } catch (IOException ex) {
+                final T result = future.get();
+                if (result != null) {
+                    ret.add(result);
+                }
+            } catch (ExecutionException e) {
+                log.error("Error deploying OSGi bundles, message = {}", e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                log.error("Thread error deploying OSGi bundles, message = {}", e.getMessage(), e);
+                futures.forEach(f -> f.cancel(true));
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return ret;
+    }
+
+    private boolean attempt(final ModuleDeployment deployment, final Step step) {
+        try {
+            step.run(deployment);
+            return true;
+        } catch (BundleException | IOException e) {
+            failed(deployment.getSource(), deployment.getDescriptor(), e);
+        } catch (InterruptedException e) {
+            failed(deployment.getSource(), deployment.getDescriptor(), e);
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private void failed(final Path i, final BundleDescriptor descriptor, final Exception e) {
+        deploymentMetrics.failed(descriptor);
+        deploymentJobs.failed(i, e.getMessage());
+        if (e instanceof BundleException) {
+            log.error("Error deploying custom bundle: {}, message: {}", i, e.getMessage(), e);
+            try {
+                discard(i);
+            } catch (IOException e1) {
+                log.error("I/O Error deploying bundles, message = {}", e.getMessage(), e);
+            }
+        } else if (e instanceof IOException) {
+            log.error("I/O Error deploying OSGi bundles, message = {}", e.getMessage(), e);
+        } else {
+            log.error("Thread error deploying OSGi bundles, message = {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Resolves the new version installed next to the running one, switches over by stopping the previous bundle
+     * and starting the new one, and only then drains and uninstalls the previous bundle. When the new version cannot
+     * be resolved the previous one is not touched, when it fails to start the previous one is started again.
+     */
+    private void upgrade(final ModuleDeployment deployment) throws BundleException, IOException, InterruptedException {
+        final Bundle previous = deployment.getPrevious();
+
+        resolve(deployment);
+        warmUp(deployment);
+        swapping(previous);
+        final Optional<DriverInterface> driver = stop(deployment);
+        try {
+            start(deployment);
+        } catch (BundleException e) {
+            log.warn("Rolling back bundle = {}, starting the previous version {}.", deployment, previous.getVersion());
+            deploymentMetrics.rolledBack(deployment.getDescriptor());
+            previous.start();
+            deploymentJournal.installed(previous, null);
+            throw e;
+        }
+        drain(deployment, driver);
+        uninstall(deployment);
+        commit(deployment);
+    }
+
+    /**
+     * Replaces a bundle that cannot run beside its new version. The previous bundle is installed again from its
+     * module file when the new version fails.
+     */
+    private void replace(final ModuleDeployment deployment) throws BundleException, IOException, InterruptedException {
+        final Bundle previous = deployment.getPrevious();
+
+        swapping(previous);
+        drain(deployment, stop(deployment));
+        uninstall(deployment);
+        try {
+            install(deployment);
+            warmUp(deployment);
+            start(deployment);
+        } catch (BundleException e) {
+            log.warn("Rolling back bundle = {}, installing the previous version {} again.", deployment, previous.getVersion());
+            deploymentMetrics.rolledBack(deployment.getDescriptor());
+            final Bundle restored = moduleRegistry.context().installBundle(BundleLocations.toPath(previous.getLocation()).toString());
+            restored.start();
+            deploymentJournal.installed(restored, null);
+            throw e;
+        }
+        commit(deployment);
+    }
+
+    /**
+     * Records in the journal the version running before a swap, so a swap cut short by a crash can be rolled back.
+     */
+    private void swapping(final Bundle previous) {
+        deploymentJournal.swapping(previous, bundleStore.indexed(previous.getSymbolicName()).orElse(null));
+    }
+
+    private void install(final ModuleDeployment deployment) throws BundleException, IOException {
+        final Bundle previous = deployment.getPrevious();
+        final String location = previous != null && BundleLocations.sameFile(BundleLocations.toPath(previous.getLocation()), deployment.getTarget())
+            ? BundleLocations.sideBySide(deployment.getTarget(), deployment.getDescriptor().getVersion())
+            : deployment.getTarget().toString();
+
+        final Timer.Sample sample = enter(deployment, DeploymentPhase.INSTALL);
+        try (InputStream in = Files.newInputStream(deployment.getSource())) {
+            deployment.setInstalled(moduleRegistry.context().installBundle(location, in));
+        } finally {
+            deploymentMetrics.phase(sample, DeploymentPhase.INSTALL, deployment.getDescriptor());
+        }
+    }
+
+    private void resolve(final ModuleDeployment deployment) throws BundleException {
+        final Timer.Sample sample = enter(deployment, DeploymentPhase.RESOLVE);
+        final boolean resolved = moduleRegistry.wiring().resolveBundles(Collections.singleton(deployment.getInstalled()));
+
+        deploymentMetrics.phase(sample, DeploymentPhase.RESOLVE, deployment.getDescriptor());
+        if (!resolved) {
+            abort(deployment);
+            throw new BundleException("Bundle " + deployment.getDescriptor() + " cannot be resolved.", BundleException.RESOLVE_ERROR);
+        }
+    }
+
+    /**
+     * Resolves the new versions installed ahead of the switch over in a single pass. The bundles left unresolved
+     * are reported when they are resolved or started on their own.
+     */
+    private void resolve(final Collection<ModuleDeployment> deployments) {
+        if (deployments.isEmpty()) {
+            return;
+        }
+        deployments.forEach(d -> deploymentJobs.phase(d.getSource(), DeploymentPhase.RESOLVE));
+        final long started = System.nanoTime();
+        moduleRegistry.wiring().resolveBundles(deployments.stream().map(ModuleDeployment::getInstalled).collect(Collectors.toList()));
+        final Duration elapsed = Duration.ofNanos(System.nanoTime() - started);
+        deployments.forEach(d -> deploymentMetrics.phase(elapsed, DeploymentPhase.RESOLVE, d.getDescriptor()));
+    }
+
+    private void start(final ModuleDeployment deployment) throws BundleException {
+        final Timer.Sample sample = enter(deployment, DeploymentPhase.START);
+        try {
+            moduleActivation.start(deployment.getInstalled(), deployment.isPreviousActive());
+        } catch (BundleException e) {
+            abort(deployment);
+            throw e;
+        } finally {
+            deploymentMetrics.phase(sample, DeploymentPhase.START, deployment.getDescriptor());
+        }
+    }
+
+    /**
+     * Warms up the new version when its manifest declares a warm-up, before it is started. During an upgrade the
+     * previous version keeps serving meanwhile.
+     */
+    private void warmUp(final ModuleDeployment deployment) throws BundleException, InterruptedException {
+        if (!moduleWarmUp.isDeclared(deployment.getDescriptor())) {
+            return;
+        }
+        final Timer.Sample sample = enter(deployment, DeploymentPhase.WARM_UP);
+        try {
+            moduleWarmUp.warmUp(deployment.getInstalled(), deployment.getDescriptor());
+        } catch (BundleException e) {
+            abort(deployment);
+            throw e;
+        } finally {
+            deploymentMetrics.phase(sample, DeploymentPhase.WARM_UP, deployment.getDescriptor());
+        }
+    }
+
+    private Optional<DriverInterface> stop(final ModuleDeployment deployment) throws BundleException {
+        final Timer.Sample sample = enter(deployment, DeploymentPhase.STOP);
+        try {
+            return bundleDrainer.signal(deployment.getPrevious());
+        } finally {
+            deploymentMetrics.phase(sample, DeploymentPhase.STOP, deployment.getDescriptor());
+        }
+    }
+
+    private void drain(final ModuleDeployment deployment, final Optional<DriverInterface> driver) throws InterruptedException {
+        final Timer.Sample sample = enter(deployment, DeploymentPhase.DRAIN);
+        try {
+            bundleDrainer.awaitDrained(driver);
+        } finally {
+            deploymentMetrics.phase(sample, DeploymentPhase.DRAIN, deployment.getDescriptor());
+        }
+    }
+
+    private void uninstall(final ModuleDeployment deployment) throws BundleException, InterruptedException {
+        final Timer.Sample sample = enter(deployment, DeploymentPhase.UNINSTALL);
+        try {
+            bundleDrainer.uninstall(deployment.getPrevious());
+        } finally {
+            deploymentMetrics.phase(sample, DeploymentPhase.UNINSTALL, deployment.getDescriptor());
+        }
+    }
+
+    /**
+     * Reports the phase a module enters to its deployment job.
+     * @return a sample timing the phase.
+     */
+    private Timer.Sample enter(final ModuleDeployment deployment, final DeploymentPhase phase) {
+        deploymentJobs.phase(deployment.getSource(), phase);
+        return deploymentMetrics.start();
+    }
+
+    private void abort(final ModuleDeployment deployment) {
+        try {
+            deployment.getInstalled().uninstall();
+        } catch (BundleException | IllegalStateException e) {
+            log.error("Error uninstalling bundle: {}, message: {}", deployment, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Moves the module file into the bundle store, links it into its module directory, records the running module
+     * in the journal and removes the file of the previous version. The journal is written once the content is in
+     * place, so a record never points at content lost in a crash.
+     */
+    private void commit(final ModuleDeployment deployment) throws IOException {
+        final Bundle previous = deployment.getPrevious();
+        final Timer.Sample sample = enter(deployment, DeploymentPhase.COMMIT);
+
+        bundleStore.put(deployment.getSource(), deployment.getSha256());
+        manifestReader.evict(deployment.getSource());
+        contentDigests.evict(deployment.getSource());
+        bundleStore.link(deployment.getSha256(), deployment.getTarget());
+        bundleStore.record(deployment.getDescriptor().getSymbolicName(), deployment.getSha256());
+        deploymentJournal.installed(deployment.getInstalled(), deployment.getSha256(),
+            moduleActivation.isArmed(deployment.getInstalled()) ? Bundle.ACTIVE : deployment.getInstalled().getState());
+        if (previous != null && !previous.getSymbolicName().equalsIgnoreCase(deployment.getInstalled().getSymbolicName())) {
+            deploymentJournal.uninstalled(previous);
+        }
+        if (previous != null) {
+            final Path previousFile = BundleLocations.toPath(previous.getLocation());
+            log.debug("bundle old ={}, new={}", previous.getLocation(), deployment.getInstalled().getLocation());
+            if (!BundleLocations.sameFile(previousFile, deployment.getTarget()) && Files.exists(previousFile)) {
+                Files.delete(previousFile);
             }
         }
+        deploymentMetrics.phase(sample, DeploymentPhase.COMMIT, deployment.getDescriptor());
+    }
+
+    private static Duration sinceModified(final Path file) throws IOException {
+        final Duration ret = Duration.between(Files.getLastModifiedTime(file).toInstant(), Instant.now());
+        return ret.isNegative() ? Duration.ZERO : ret;
+    }
+
+    /**
+     * @return true when the running bundle has been deployed from the same content.
+     */
+    private boolean unchanged(final ModuleDeployment deployment) throws IOException {
+        final Bundle previous = deployment.getPrevious();
+
+        if (previous.getState() != Bundle.ACTIVE || !previous.getSymbolicName().equals(deployment.getDescriptor().getSymbolicName())) {
+            return false;
+        }
+        final Optional<String> deployed = bundleStore.indexed(previous.getSymbolicName());
+        if (deployed.isPresent()) {
+            return deployed.get().equals(deployment.getSha256());
+        }
+        final Path previousFile = BundleLocations.toPath(previous.getLocation());
+        return Files.exists(previousFile) && contentDigests.sha256(previousFile).equals(deployment.getSha256());
+    }
 
-        return r;
+    private void discard(final Path file) throws IOException {
+        Files.deleteIfExists(file);
+        manifestReader.evict(file);
+        contentDigests.evict(file);
+    }
+
+    private String destination(final BundleDescriptor descriptor) {
+        if (descriptor.getDriverType().equals(DriverType.Custom.toString())) {
+            return customModules;
+        } else if (descriptor.getDriverType().equals(DriverType.Core.toString())) {
+            return coreModules;
+        } else {
+            return serviceModules;
+        }
+    }
+
+    static boolean isDeployable(final Path path) {
+        final String fileName = path.getFileName().toString();
+
+        return ! fileName.equals("README.md") && ! fileName.startsWith(".") && Files.isRegularFile(path);
+    }
+
+    private static String moduleKey(final ModuleDeployment deployment) {
+        final String name = deployment.getDescriptor().getSymbolicName();
+        return name == null ? deployment.getSource().toString() : name.toLowerCase(Locale.ROOT);
+    }
+
+    private Optional<Bundle> lookup(final BundleDescriptor descriptor) {
+        return moduleRegistry.findByBundleName(descriptor.getBundleName())
+            .filter(ModuleEntry::isActiveOrResolved)
+            .map(ModuleEntry::getBundle);
+    }
+
+    /**
+     * Stops taking new deployments: the watcher, the directory scan and the job consumer are stopped once the
+     * deployment in progress, if any, has ended. Queued jobs are left queued. Called at shutdown before the modules
+     * are stopped, so no module is installed or started in a tier already stopped.
+     */
+    public void suspend() {
+        suspended = true;
+        if (watcher != null) {
+            watcher.stop();
+        }
+        synchronized (this) {
+            scanner.shutdownNow();
+            if (jobConsumer != null) {
+                jobConsumer.interrupt();
+            }
+        }
+        log.info("Deployments suspended.");
     }
 
     @PreDestroy
     public void finish() {
+        if (watcher != null) {
+            watcher.stop();
+        }
+        scanner.shutdownNow();
+        if (jobConsumer != null) {
+            jobConsumer.interrupt();
+        }
         // todo: study a way to use a higher interface to stop drivers.
 //        TimerSupplierInterface.stop();
     }
@@ -222,4 +954,14 @@ public class Deployer {
         }
         return var;
     }
+
+    @FunctionalInterface
+    private interface Step {
+        void run(ModuleDeployment deployment) throws BundleException, IOException, InterruptedException;
+    }
+
+    @FunctionalInterface
+    private interface Task<T, R> {
+        R run(T item) throws BundleException, IOException, InterruptedException;
+    }
 }
\ No newline at end of file
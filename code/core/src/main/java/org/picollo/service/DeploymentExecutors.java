@@ -0,0 +1,56 @@
+/*
+ * DeploymentExecutors.java
+ */
+package org.picollo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executor of the deployment work: manifest reading, installs, switch overs and drain waits run here instead of on
+ * the shared task scheduler. It is a bounded pool of platform threads, or a virtual thread per task when enabled
+ * and the node runs on Java 21 or later, so the blocking waits of a deployment do not hold platform threads.
+ * @author rod
+ * @since 2026-10
+ */
+@Configuration
+public class DeploymentExecutors {
+    private static final Logger log = LoggerFactory.getLogger(DeploymentExecutors.class);
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService deploymentExecutor(@Value("${application.deployer.parallelism:0}") final int parallelism,
+                                              @Value("${application.deployer.virtual-threads:false}") final boolean virtualThreads) {
+        if (virtualThreads) {
+            final Optional<ExecutorService> ret = virtualThreadExecutor();
+            if (ret.isPresent()) {
+                log.info("Deployments run on virtual threads.");
+                return ret.get();
+            }
+            log.warn("Virtual threads need Java 21 or later, deployments run on platform threads.");
+        }
+        final int size = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("picollo-deployer-");
+        threadFactory.setDaemon(true);
+        log.info("Deployments run on {} platform threads.", size);
+        return Executors.newFixedThreadPool(size, threadFactory);
+    }
+
+    /**
+     * The build targets a Java version without virtual threads, so the executor is looked up reflectively.
+     */
+    static Optional<ExecutorService> virtualThreadExecutor() {
+        try {
+            return Optional.of((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+        } catch (ReflectiveOperationException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * DeploymentJob.java
+ */
+package org.picollo.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Deployment of an uploaded module, followed from the upload until the module is running or has been rejected.
+ * @author rod
+ * @since 2026-10
+ */
+@Getter
+public final class DeploymentJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED;
+
+        public boolean isFinished() {
+            return this == SUCCEEDED || this == FAILED;
+        }
+    }
+
+    private final String id;
+    private final String fileName;
+    /** Release the module is deployed with, all or none, or null when it is deployed on its own. */
+    private final String release;
+    private final int priority;
+    private final Instant submitted;
+    @Getter(AccessLevel.NONE)
+    private final Path file;
+    @Getter(AccessLevel.NONE)
+    private final long sequence;
+    @Getter(AccessLevel.NONE)
+    private final List<Transition> transitions = new CopyOnWriteArrayList<>();
+    private volatile Status status = Status.QUEUED;
+    private volatile DeploymentPhase phase;
+    private volatile String message;
+    private volatile Instant updated;
+
+    DeploymentJob(final String id, final String fileName, final String release, final Path file, final int priority,
+                  final long sequence) {
+        this.id = id;
+        this.fileName = fileName;
+        this.release = release;
+        this.file = file;
+        this.priority = priority;
+        this.sequence = sequence;
+        this.submitted = Instant.now();
+        this.updated = submitted;
+    }
+
+    /**
+     * @return the phases the deployment has gone through, with the time each one started.
+     */
+    public List<Transition> getTransitions() {
+        return Collections.unmodifiableList(transitions);
+    }
+
+    Path file() {
+        return file;
+    }
+
+    long sequence() {
+        return sequence;
+    }
+
+    void enter(final DeploymentPhase phase) {
+        this.updated = Instant.now();
+        this.phase = phase;
+        this.status = Status.RUNNING;
+        transitions.add(new Transition(phase, updated));
+    }
+
+    void finish(final Status status, final String message) {
+        this.updated = Instant.now();
+        this.message = message;
+        this.status = status;
+    }
+
+    @Getter
+    public static final class Transition {
+        private final DeploymentPhase phase;
+        private final Instant at;
+
+        private Transition(final DeploymentPhase phase, final Instant at) {
+            this.phase = phase;
+            this.at = at;
+        }
+    }
+}
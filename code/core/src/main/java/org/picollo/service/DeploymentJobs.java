@@ -0,0 +1,200 @@
+/*
+ * DeploymentJobs.java
+ */
+package org.picollo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Deployment jobs of the uploaded modules. Jobs wait in a queue ordered by priority and submission, the
+ * {@link Deployer} takes them in batches and reports the phases of each module, and every change is pushed to the
+ * registered listeners from a single notification thread so a slow listener never holds up a deployment. The jobs
+ * of a release are queued as one entry, so they are always taken together.
+ * @author rod
+ * @since 2026-10
+ */
+@Component
+public class DeploymentJobs {
+    private static final Logger log = LoggerFactory.getLogger(DeploymentJobs.class);
+    @Value("${application.deployer.job-retention:1000}")
+    private int retention;
+    private final AtomicLong sequence = new AtomicLong();
+    private final BlockingQueue<DeploymentJob> queue = new PriorityBlockingQueue<>(16,
+        Comparator.comparingInt(DeploymentJob::getPriority).reversed().thenComparingLong(DeploymentJob::sequence));
+    private final Map<String, DeploymentJob> jobs = new ConcurrentHashMap<>();
+    private final Map<Path, DeploymentJob> byFile = new ConcurrentHashMap<>();
+    private final Map<String, List<DeploymentJob>> releases = new ConcurrentHashMap<>();
+    private final Queue<String> finished = new ConcurrentLinkedQueue<>();
+    private final List<Consumer<DeploymentJob>> listeners = new CopyOnWriteArrayList<>();
+    private ExecutorService notifier;
+
+    @PostConstruct
+    public void init() {
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("picollo-jobs-");
+        threadFactory.setDaemon(true);
+        notifier = Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    @PreDestroy
+    public void finish() {
+        notifier.shutdownNow();
+    }
+
+    /**
+     * Queues the deployment of a module published to a job directory by the {@link StagingArea}.
+     * @param fileName module file name.
+     * @param file module file.
+     * @param priority higher priorities are deployed first.
+     * @return the queued job.
+     */
+    public DeploymentJob submit(final String fileName, final Path file, final int priority) {
+        final DeploymentJob ret = register(fileName, null, file, priority);
+
+        queue.add(ret);
+        notify(ret);
+        return ret;
+    }
+
+    /**
+     * Queues the deployment of modules published together as one release, they are taken by the {@link Deployer}
+     * in the same batch and switched over all or none.
+     * @param files module files by file name.
+     * @param priority higher priorities are deployed first.
+     * @return the queued jobs, one per module.
+     */
+    public List<DeploymentJob> submitRelease(final Map<String, Path> files, final int priority) {
+        final String release = UUID.randomUUID().toString();
+        final List<DeploymentJob> ret = new ArrayList<>();
+
+        files.forEach((fileName, file) -> ret.add(register(fileName, release, file, priority)));
+        if (ret.isEmpty()) {
+            return ret;
+        }
+        releases.put(ret.get(0).getId(), new ArrayList<>(ret.subList(1, ret.size())));
+        queue.add(ret.get(0));
+        ret.forEach(this::notify);
+        return ret;
+    }
+
+    private DeploymentJob register(final String fileName, final String release, final Path file, final int priority) {
+        final DeploymentJob ret = new DeploymentJob(UUID.randomUUID().toString(), fileName, release, key(file), priority,
+            sequence.incrementAndGet());
+
+        jobs.put(ret.getId(), ret);
+        final DeploymentJob replaced = byFile.put(ret.file(), ret);
+        if (replaced != null) {
+            finish(replaced, DeploymentJob.Status.FAILED, "Superseded by job " + ret.getId() + ".");
+        }
+        return ret;
+    }
+
+    public Optional<DeploymentJob> find(final String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * Waits for queued jobs.
+     * @param max maximum number of jobs to return.
+     * @return the queued jobs with the highest priority, at least one, with every job of the releases taken.
+     * @throws InterruptedException when the waiting thread is interrupted.
+     */
+    List<DeploymentJob> take(final int max) throws InterruptedException {
+        final List<DeploymentJob> taken = new ArrayList<>();
+        final List<DeploymentJob> ret = new ArrayList<>();
+
+        taken.add(queue.take());
+        queue.drainTo(taken, max - 1);
+        for (DeploymentJob job : taken) {
+            ret.add(job);
+            Optional.ofNullable(releases.remove(job.getId())).ifPresent(ret::addAll);
+        }
+        return ret;
+    }
+
+    /**
+     * Records that the module file has entered a deployment phase. Files without a job are ignored.
+     */
+    void phase(final Path file, final DeploymentPhase phase) {
+        final DeploymentJob job = byFile.get(key(file));
+
+        if (job != null) {
+            job.enter(phase);
+            notify(job);
+        }
+    }
+
+    void succeeded(final Path file, final String message) {
+        Optional.ofNullable(byFile.get(key(file))).ifPresent(j -> finish(j, DeploymentJob.Status.SUCCEEDED, message));
+    }
+
+    void failed(final Path file, final String message) {
+        Optional.ofNullable(byFile.get(key(file))).ifPresent(j -> finish(j, DeploymentJob.Status.FAILED, message));
+    }
+
+    /**
+     * @param listener called with every job change.
+     */
+    public void addListener(final Consumer<DeploymentJob> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(final Consumer<DeploymentJob> listener) {
+        listeners.remove(listener);
+    }
+
+    private void finish(final DeploymentJob job, final DeploymentJob.Status status, final String message) {
+        job.finish(status, message);
+        byFile.remove(job.file(), job);
+        queue.remove(job);
+        Optional.ofNullable(releases.remove(job.getId()))
+            .ifPresent(members -> members.forEach(m -> finish(m, status, "Released with job " + job.getId() + ": " + message)));
+        finished.add(job.getId());
+        while (finished.size() > retention) {
+            final String id = finished.poll();
+            if (id != null) {
+                jobs.remove(id);
+            }
+        }
+        notify(job);
+    }
+
+    private void notify(final DeploymentJob job) {
+        if (!listeners.isEmpty()) {
+            notifier.execute(() -> listeners.forEach(l -> {
+                try {
+                    l.accept(job);
+                } catch (RuntimeException e) {
+                    log.debug("Error notifying the change of job {}, message = {}", job.getId(), e.getMessage());
+                }
+            }));
+        }
+    }
+
+    private static Path key(final Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+}
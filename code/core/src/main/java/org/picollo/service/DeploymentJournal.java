@@ -0,0 +1,298 @@
+/*
+ * DeploymentJournal.java
+ */
+package org.picollo.service;
+
+import lombok.Getter;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.startlevel.BundleStartLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the modules deployed by the node, kept in a memory-mapped file. Every install, swap and
+ * uninstall is appended as a record holding the module content hash, location, start level and state, so that at
+ * boot the node knows the exact module set it was running and which swap, if any, was cut short by a crash.
+ * <p>
+ * A record is its length, a CRC-32 and the record text. Reading stops at the first empty or damaged record, which
+ * drops a record torn by a crash. The journal is compacted to one record per module once it has been replayed.
+ * @author rod
+ * @since 2026-10
+ */
+@Component
+public class DeploymentJournal {
+    private static final Logger log = LoggerFactory.getLogger(DeploymentJournal.class);
+    private static final int RECORD_HEADER = 2 * Integer.BYTES;
+    private static final int MIN_CAPACITY = 1 << 20;
+
+    public enum Type {
+        /** The module has been installed or upgraded and is in the recorded state. */
+        INSTALL,
+        /** The module is being swapped, the record describes the version running before the swap. */
+        SWAP,
+        /** The module has been uninstalled. */
+        UNINSTALL
+    }
+
+    @Value("${application.deployer.journal:./storage/deployments.journal}")
+    private String journalFile;
+    private Path file;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private final Map<String, Entry> modules = new LinkedHashMap<>();
+
+    @PostConstruct
+    public void init() throws IOException {
+        file = Paths.get(journalFile);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        open();
+        log.info("Read {} records of {} modules from deployment journal {}", read(), modules.size(), file);
+    }
+
+    @PreDestroy
+    public synchronized void finish() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * @return the last record of every module in the journal.
+     */
+    public synchronized List<Entry> entries() {
+        return new ArrayList<>(modules.values());
+    }
+
+    /**
+     * Records a module installed, upgraded or whose state has changed.
+     * @param bundle module bundle.
+     * @param sha256 SHA-256 of the module content, or null to keep the recorded one.
+     */
+    public synchronized void installed(final Bundle bundle, final String sha256) {
+        installed(bundle, sha256, bundle.getState());
+    }
+
+    /**
+     * Records a module installed in the given state rather than its current one, such as a lazy module recorded
+     * ACTIVE while it waits for its activation.
+     * @param bundle module bundle.
+     * @param sha256 SHA-256 of the module content, or null to keep the recorded one.
+     * @param state state to restore the module in.
+     */
+    public synchronized void installed(final Bundle bundle, final String sha256, final int state) {
+        final Entry recorded = modules.get(key(bundle.getSymbolicName()));
+        final String content = sha256 != null || recorded == null ? sha256 : recorded.sha256;
+
+        append(Entry.of(Type.INSTALL, bundle, content, state));
+    }
+
+    /**
+     * Records that a module is about to be swapped for a new version.
+     * @param previous bundle running before the swap.
+     * @param sha256 SHA-256 of the running module content, or null when unknown.
+     */
+    public synchronized void swapping(final Bundle previous, final String sha256) {
+        append(Entry.of(Type.SWAP, previous, sha256));
+    }
+
+    public synchronized void uninstalled(final Bundle bundle) {
+        append(Entry.of(Type.UNINSTALL, bundle, null));
+    }
+
+    /**
+     * Rewrites the journal with the last record of every module still deployed.
+     */
+    public synchronized void compact() {
+        final Path part = file.resolveSibling(file.getFileName() + ".part");
+
+        modules.values().removeIf(e -> e.type == Type.UNINSTALL);
+        try (FileChannel out = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Entry e : modules.values()) {
+                out.write(record(e.encode()));
+            }
+            out.force(true);
+        } catch (IOException e) {
+            log.warn("Deployment journal {} cannot be compacted, message = {}", file, e.getMessage());
+            return;
+        }
+        try {
+            buffer.force();
+            channel.close();
+            Files.move(part, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Deployment journal {} cannot be replaced, message = {}", file, e.getMessage());
+        }
+        try {
+            open();
+            read();
+        } catch (IOException e) {
+            throw new IllegalStateException("Deployment journal " + file + " cannot be opened.", e);
+        }
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(MIN_CAPACITY, channel.size()));
+    }
+
+    /**
+     * Reads the records of the journal, leaving the buffer positioned after the last valid one.
+     * @return the number of records read.
+     */
+    private int read() {
+        int ret = 0;
+
+        for (Entry e = next(); e != null; e = next()) {
+            modules.put(key(e.symbolicName), e);
+            ret++;
+        }
+        return ret;
+    }
+
+    private Entry next() {
+        final int start = buffer.position();
+
+        if (buffer.remaining() < RECORD_HEADER) {
+            return null;
+        }
+        final int length = buffer.getInt();
+        final int crc = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+            buffer.position(start);
+            return null;
+        }
+        final byte[] data = new byte[length];
+        buffer.get(data);
+        final CRC32 checksum = new CRC32();
+        checksum.update(data);
+        final Entry ret = (int) checksum.getValue() == crc ? Entry.decode(data) : null;
+        if (ret == null) {
+            log.warn("Damaged record at {} in deployment journal {}, ignoring the rest of the journal.", start, file);
+            buffer.position(start);
+        }
+        return ret;
+    }
+
+    private void append(final Entry entry) {
+        final ByteBuffer record = record(entry.encode());
+
+        try {
+            if (buffer.remaining() < record.remaining() + RECORD_HEADER) {
+                grow(record.remaining());
+            }
+            buffer.put(record);
+            buffer.force();
+            modules.put(key(entry.symbolicName), entry);
+        } catch (IOException e) {
+            log.error("Error appending to deployment journal {}, message = {}", file, e.getMessage(), e);
+        }
+    }
+
+    private void grow(final int needed) throws IOException {
+        final int position = buffer.position();
+        final long capacity = Math.max(2L * buffer.capacity(), position + needed + RECORD_HEADER);
+
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        buffer.position(position);
+    }
+
+    private static ByteBuffer record(final byte[] data) {
+        final CRC32 checksum = new CRC32();
+        checksum.update(data);
+        final ByteBuffer ret = ByteBuffer.allocate(RECORD_HEADER + data.length);
+
+        ret.putInt(data.length).putInt((int) checksum.getValue()).put(data).flip();
+        return ret;
+    }
+
+    private static String key(final String symbolicName) {
+        return symbolicName == null ? "" : symbolicName.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Journal record of a module.
+     */
+    @Getter
+    public static final class Entry {
+        private static final String SEPARATOR = "\t";
+        private static final String NONE = "-";
+        private final Type type;
+        private final long time;
+        private final String symbolicName;
+        private final String version;
+        private final String sha256;
+        private final String location;
+        private final int startLevel;
+        private final int state;
+
+        private Entry(final Type type, final long time, final String symbolicName, final String version,
+                      final String sha256, final String location, final int startLevel, final int state) {
+            this.type = type;
+            this.time = time;
+            this.symbolicName = symbolicName;
+            this.version = version;
+            this.sha256 = sha256;
+            this.location = location;
+            this.startLevel = startLevel;
+            this.state = state;
+        }
+
+        static Entry of(final Type type, final Bundle bundle, final String sha256) {
+            return of(type, bundle, sha256, bundle.getState());
+        }
+
+        static Entry of(final Type type, final Bundle bundle, final String sha256, final int state) {
+            final BundleStartLevel startLevel = bundle.adapt(BundleStartLevel.class);
+
+            return new Entry(type, System.currentTimeMillis(), bundle.getSymbolicName(), bundle.getVersion().toString(),
+                sha256, bundle.getLocation(), startLevel == null ? 0 : startLevel.getStartLevel(), state);
+        }
+
+        private byte[] encode() {
+            return String.join(SEPARATOR, type.name(), Long.toString(time), symbolicName, version,
+                sha256 == null ? NONE : sha256, location, Integer.toString(startLevel), Integer.toString(state))
+                .getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static Entry decode(final byte[] data) {
+            final String[] fields = new String(data, StandardCharsets.UTF_8).split(SEPARATOR, -1);
+
+            try {
+                return new Entry(Type.valueOf(fields[0]), Long.parseLong(fields[1]), fields[2], fields[3],
+                    NONE.equals(fields[4]) ? null : fields[4], fields[5], Integer.parseInt(fields[6]),
+                    Integer.parseInt(fields[7]));
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + symbolicName + " " + version;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * DeploymentMetrics.java
+ */
+package org.picollo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.osgi.framework.Bundle;
+import org.picollo.service.bundle.BundleDescriptor;
+import org.picollo.service.bundle.ModuleRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Micrometer meters of the deployment pipeline: a timer per deployment phase tagged by module and driver type,
+ * counters of deployments, failures and rollbacks, gauges of the installed bundles by state, and a timer of the
+ * module stops at shutdown.
+ * @author rod
+ * @since 2026-10
+ */
+@Component
+public class DeploymentMetrics {
+    private static final String PHASE = "picollo.deployment.phase";
+    private static final String DEPLOYMENTS = "picollo.deployments";
+    private static final String FAILURES = "picollo.deployment.failures";
+    private static final String ROLLBACKS = "picollo.deployment.rollbacks";
+    private static final String UPLOADS = "picollo.deployment.uploads";
+    private static final String UPLOAD_SIZE = "picollo.deployment.upload.size";
+    private static final String BUNDLES = "picollo.bundles";
+    private static final String SHUTDOWN = "picollo.shutdown.module";
+    private static final String UNKNOWN = "unknown";
+    private static final Map<Integer, String> STATES = new LinkedHashMap<>();
+
+    static {
+        STATES.put(Bundle.INSTALLED, "INSTALLED");
+        STATES.put(Bundle.RESOLVED, "RESOLVED");
+        STATES.put(Bundle.STARTING, "STARTING");
+        STATES.put(Bundle.STOPPING, "STOPPING");
+        STATES.put(Bundle.ACTIVE, "ACTIVE");
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private ModuleRegistry moduleRegistry;
+
+    @PostConstruct
+    public void init() {
+        STATES.forEach((state, name) -> Gauge.builder(BUNDLES, moduleRegistry, r -> r.count(state))
+            .description("Installed bundles by state")
+            .tag("state", name)
+            .register(meterRegistry));
+    }
+
+    /**
+     * @return a sample to be stopped by {@link #phase(Timer.Sample, DeploymentPhase, BundleDescriptor)}.
+     */
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Records the time a module spent in a deployment phase.
+     * @param sample sample started when the phase began.
+     * @param phase deployment phase.
+     * @param descriptor module being deployed.
+     */
+    public void phase(final Timer.Sample sample, final DeploymentPhase phase, final BundleDescriptor descriptor) {
+        sample.stop(phaseTimer(phase, descriptor));
+    }
+
+    /**
+     * Records the time a module spent in a deployment phase.
+     * @param duration phase duration.
+     * @param phase deployment phase.
+     * @param descriptor module being deployed.
+     */
+    public void phase(final Duration duration, final DeploymentPhase phase, final BundleDescriptor descriptor) {
+        phaseTimer(phase, descriptor).record(duration);
+    }
+
+    public void deployed(final BundleDescriptor descriptor) {
+        counter(DEPLOYMENTS, descriptor).increment();
+    }
+
+    public void failed(final BundleDescriptor descriptor) {
+        counter(FAILURES, descriptor).increment();
+    }
+
+    public void rolledBack(final BundleDescriptor descriptor) {
+        counter(ROLLBACKS, descriptor).increment();
+    }
+
+    /**
+     * Records a module upload.
+     * @param sample sample started when the upload began.
+     * @param size uploaded bytes.
+     * @param outcome "success" or "failure".
+     */
+    public void uploaded(final Timer.Sample sample, final long size, final String outcome) {
+        sample.stop(Timer.builder(UPLOADS)
+            .description("Module uploads")
+            .tag("outcome", outcome)
+            .register(meterRegistry));
+        if (size > 0) {
+            DistributionSummary.builder(UPLOAD_SIZE)
+                .description("Uploaded module sizes")
+                .baseUnit("bytes")
+                .register(meterRegistry)
+                .record(size);
+        }
+    }
+
+    /**
+     * Records the time a module took to stop at shutdown.
+     * @param duration stop duration.
+     * @param module module symbolic name.
+     * @param type module driver type.
+     * @param outcome "stopped", "forced" or "failed".
+     */
+    public void stopped(final Duration duration, final String module, final String type, final String outcome) {
+        Timer.builder(SHUTDOWN)
+            .description("Time taken by modules to stop at shutdown")
+            .tag("module", module == null ? UNKNOWN : module)
+            .tag("type", type == null ? UNKNOWN : type)
+            .tag("outcome", outcome)
+            .register(meterRegistry)
+            .record(duration);
+    }
+
+    private Timer phaseTimer(final DeploymentPhase phase, final BundleDescriptor descriptor) {
+        return Timer.builder(PHASE)
+            .description("Time spent by modules in each deployment phase")
+            .tag("phase", phase.label())
+            .tag("module", module(descriptor))
+            .tag("type", type(descriptor))
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    private Counter counter(final String name, final BundleDescriptor descriptor) {
+        return Counter.builder(name)
+            .tag("module", module(descriptor))
+            .tag("type", type(descriptor))
+            .register(meterRegistry);
+    }
+
+    private static String module(final BundleDescriptor descriptor) {
+        return descriptor == null || descriptor.getSymbolicName() == null ? UNKNOWN : descriptor.getSymbolicName();
+    }
+
+    private static String type(final BundleDescriptor descriptor) {
+        return descriptor == null ? UNKNOWN : descriptor.getDriverType();
+    }
+}
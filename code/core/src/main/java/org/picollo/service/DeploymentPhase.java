@@ -0,0 +1,32 @@
+/*
+ * DeploymentPhase.java
+ */
+package org.picollo.service;
+
+import java.util.Locale;
+
+/**
+ * Phases a module goes through while the {@link Deployer} installs it.
+ * @author rod
+ * @since 2026-10
+ */
+public enum DeploymentPhase {
+    DETECTION,
+    MANIFEST,
+    VALIDATE,
+    INSTALL,
+    RESOLVE,
+    WARM_UP,
+    STOP,
+    START,
+    DRAIN,
+    UNINSTALL,
+    COMMIT;
+
+    /**
+     * @return the phase name used in metrics and reports.
+     */
+    public String label() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
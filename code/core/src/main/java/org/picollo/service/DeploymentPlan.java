@@ -0,0 +1,98 @@
+/*
+ * DeploymentPlan.java
+ */
+package org.picollo.service;
+
+import org.picollo.service.bundle.BundleDescriptor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Orders the modules of a release by their dependencies. A module depends on the pending modules exporting a
+ * package it imports or named by its Require-Bundle header. The modules are grouped in waves: every module of a
+ * wave only depends on modules of earlier waves, so the modules of a wave can be switched over in parallel.
+ * @author rod
+ * @since 2026-10
+ */
+final class DeploymentPlan {
+
+    private DeploymentPlan() {
+    }
+
+    /**
+     * @param deployments modules of the release.
+     * @return the modules grouped in dependency order. Modules depending on each other in a cycle are placed
+     * together in the last wave.
+     */
+    static List<List<ModuleDeployment>> waves(final Collection<ModuleDeployment> deployments) {
+        final Map<String, ModuleDeployment> exporters = new HashMap<>();
+        final Map<String, ModuleDeployment> bySymbolicName = new HashMap<>();
+
+        for (ModuleDeployment d : deployments) {
+            d.getDescriptor().getExportedPackages().forEach(p -> exporters.putIfAbsent(p, d));
+            if (d.getDescriptor().getSymbolicName() != null) {
+                bySymbolicName.put(d.getDescriptor().getSymbolicName(), d);
+            }
+        }
+
+        return waves(deployments, d -> {
+            final BundleDescriptor descriptor = d.getDescriptor();
+            final Set<ModuleDeployment> required = new LinkedHashSet<>();
+            descriptor.getImportedPackages().forEach(p -> add(required, exporters.get(p), d));
+            descriptor.getRequiredBundles().forEach(b -> add(required, bySymbolicName.get(b), d));
+            return required;
+        });
+    }
+
+    /**
+     * Groups items in waves, every item of a wave only depending on items of earlier waves.
+     * @param items items to order.
+     * @param dependencies items each item depends on, items outside the given ones are ignored.
+     * @return the items grouped in dependency order, items depending on each other in a cycle placed together in
+     * the last wave.
+     */
+    static <T> List<List<T>> waves(final Collection<T> items, final Function<T, Collection<T>> dependencies) {
+        final Set<T> all = new HashSet<>(items);
+        final Map<T, Set<T>> pending = new LinkedHashMap<>();
+        for (T item : items) {
+            final Set<T> required = new LinkedHashSet<>(dependencies.apply(item));
+            required.retainAll(all);
+            required.remove(item);
+            pending.put(item, required);
+        }
+
+        final List<List<T>> ret = new ArrayList<>();
+        final Set<T> done = new HashSet<>();
+        while (!pending.isEmpty()) {
+            final List<T> wave = new ArrayList<>();
+            pending.forEach((item, required) -> {
+                if (done.containsAll(required)) {
+                    wave.add(item);
+                }
+            });
+            if (wave.isEmpty()) {
+                wave.addAll(pending.keySet());
+            }
+            wave.forEach(pending::remove);
+            done.addAll(wave);
+            ret.add(wave);
+        }
+        return ret;
+    }
+
+    private static void add(final Set<ModuleDeployment> required, final ModuleDeployment dependency,
+                            final ModuleDeployment dependent) {
+        if (dependency != null && dependency != dependent) {
+            required.add(dependency);
+        }
+    }
+}
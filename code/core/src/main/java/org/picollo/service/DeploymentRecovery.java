@@ -0,0 +1,172 @@
+/*
+ * DeploymentRecovery.java
+ */
+package org.picollo.service;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.startlevel.BundleStartLevel;
+import org.picollo.service.bundle.BundleLocations;
+import org.picollo.service.bundle.BundleStore;
+import org.picollo.service.bundle.ContentDigests;
+import org.picollo.service.bundle.ModuleEntry;
+import org.picollo.service.bundle.ModuleRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Restores at boot the module set recorded by the {@link DeploymentJournal}. Modules missing from the framework are
+ * installed again from their module file, or from the bundle store when the file is gone or holds other content,
+ * and brought back to their recorded start level and state. A swap cut short by a crash is rolled back to the
+ * version running before it: the new version is uninstalled and the previous one restored, so the module file left
+ * in the deployment directory is simply deployed again by the next scan.
+ * @author rod
+ * @since 2026-10
+ */
+@Component
+public class DeploymentRecovery {
+    private static final Logger log = LoggerFactory.getLogger(DeploymentRecovery.class);
+    @Autowired
+    private DeploymentJournal deploymentJournal;
+    @Autowired
+    private ModuleRegistry moduleRegistry;
+    @Autowired
+    private ModuleOperations moduleOperations;
+    @Autowired
+    private ModuleActivation moduleActivation;
+    @Autowired
+    private BundleStore bundleStore;
+    @Autowired
+    private ContentDigests contentDigests;
+    @Autowired
+    @Qualifier("deploymentExecutor")
+    private ExecutorService executor;
+
+    /**
+     * Replays the journal, restoring the modules in parallel and starting them in wiring order.
+     * @throws InterruptedException when the calling thread is interrupted.
+     */
+    public void recover() throws InterruptedException {
+        final long started = System.nanoTime();
+        final List<DeploymentJournal.Entry> entries = deploymentJournal.entries();
+        final List<Future<Bundle>> pending = new ArrayList<>();
+
+        for (DeploymentJournal.Entry e : entries) {
+            pending.add(executor.submit(() -> restore(e)));
+        }
+        final List<ModuleEntry> toStart = new ArrayList<>();
+        final List<ModuleEntry> toStop = new ArrayList<>();
+        for (int i = 0; i < pending.size(); i++) {
+            final DeploymentJournal.Entry e = entries.get(i);
+            try {
+                final Bundle bundle = pending.get(i).get();
+                final Optional<ModuleEntry> module = bundle == null ? Optional.empty() : moduleRegistry.find(bundle.getSymbolicName());
+                if (module.isPresent() && e.getState() == Bundle.ACTIVE && bundle.getState() != Bundle.ACTIVE) {
+                    toStart.add(module.get());
+                } else if (module.isPresent() && e.getState() != Bundle.ACTIVE && bundle.getState() == Bundle.ACTIVE) {
+                    toStop.add(module.get());
+                }
+            } catch (ExecutionException ex) {
+                log.error("Error restoring module {} from the deployment journal, message = {}", e, ex.getCause().getMessage(), ex.getCause());
+            }
+        }
+        moduleOperations.apply(ModuleOperations.Action.START, moduleActivation.defer(toStart));
+        moduleOperations.apply(ModuleOperations.Action.STOP, toStop);
+        deploymentJournal.compact();
+        log.info("Restored {} modules from the deployment journal in {} ms", entries.size(),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    /**
+     * Brings a single module back to its journal record.
+     * @return the restored bundle, or null when the module is not deployed any more.
+     */
+    private Bundle restore(final DeploymentJournal.Entry entry) throws BundleException, IOException {
+        switch (entry.getType()) {
+            case UNINSTALL:
+                final Bundle installed = installed(entry.getLocation());
+                if (installed != null) {
+                    log.info("Uninstalling module {} removed before the restart.", entry);
+                    installed.uninstall();
+                }
+                return null;
+            case SWAP:
+                log.warn("Module {} was being swapped when the node stopped, restoring the previous version.", entry);
+                for (Bundle b : moduleRegistry.context().getBundles()) {
+                    if (entry.getSymbolicName().equals(b.getSymbolicName())
+                        && (!entry.getLocation().equals(b.getLocation()) || !entry.getVersion().equals(b.getVersion().toString()))) {
+                        b.uninstall();
+                    }
+                }
+                final Bundle ret = install(entry);
+                if (ret != null) {
+                    if (entry.getSha256() != null && bundleStore.blob(entry.getSha256()).isPresent()) {
+                        bundleStore.record(entry.getSymbolicName(), entry.getSha256());
+                    }
+                    deploymentJournal.installed(ret, entry.getSha256());
+                }
+                return ret;
+            default:
+                return install(entry);
+        }
+    }
+
+    /**
+     * Installs the module unless its bundle is already installed.
+     */
+    private Bundle install(final DeploymentJournal.Entry entry) throws BundleException, IOException {
+        final Bundle installed = installed(entry.getLocation());
+
+        if (installed != null) {
+            return installed;
+        }
+        final Optional<ModuleEntry> other = moduleRegistry.find(entry.getSymbolicName());
+        if (other.isPresent()) {
+            log.info("Module {} is installed from {}, keeping it.", entry, other.get().getLocation());
+            return null;
+        }
+        final Path file = BundleLocations.toPath(entry.getLocation());
+        if (entry.getSha256() != null && (!Files.exists(file) || !entry.getSha256().equals(contentDigests.sha256(file)))) {
+            if (!bundleStore.blob(entry.getSha256()).isPresent()) {
+                log.warn("Content of module {} is missing from the bundle store, it cannot be restored.", entry);
+                return null;
+            }
+            bundleStore.link(entry.getSha256(), file);
+            contentDigests.evict(file);
+        }
+        if (!Files.exists(file)) {
+            log.warn("Module file {} of module {} is missing, it cannot be restored.", file, entry);
+            return null;
+        }
+
+        log.info("Restoring module {} from {}.", entry, file);
+        final Bundle ret;
+        try (InputStream in = Files.newInputStream(file)) {
+            ret = moduleRegistry.context().installBundle(entry.getLocation(), in);
+        }
+        final BundleStartLevel startLevel = ret.adapt(BundleStartLevel.class);
+        if (startLevel != null && entry.getStartLevel() > 0) {
+            startLevel.setStartLevel(entry.getStartLevel());
+        }
+        return ret;
+    }
+
+    private Bundle installed(final String location) {
+        return moduleRegistry.context().getBundle(location);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * DeploymentWatcher.java
+ */
+package org.picollo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches the deployment directory and hands over module files as soon as they are completely written.
+ * A file is considered complete when no event has been received for it during the quiet period and its size and
+ * modification time did not change meanwhile, which also covers files atomically renamed into the directory.
+ * @author rod
+ * @since 2026-10
+ */
+class DeploymentWatcher implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(DeploymentWatcher.class);
+    private final Path directory;
+    private final long quietPeriod;
+    private final Consumer<List<Path>> listener;
+    private final Map<Path, Snapshot> pending = new HashMap<>();
+    private WatchService watchService;
+    private Thread thread;
+    private volatile boolean watching;
+
+    DeploymentWatcher(final Path directory, final long quietPeriod, final Consumer<List<Path>> listener) {
+        this.directory = directory;
+        this.quietPeriod = quietPeriod;
+        this.listener = listener;
+    }
+
+    /**
+     * Registers the deployment directory for events.
+     * @return false when the file system cannot deliver watch events, in which case nothing has been started.
+     */
+    synchronized boolean start() {
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("Deployment directory {} cannot be watched, falling back to polling. message = {}", directory, e.getMessage());
+            close();
+            return false;
+        }
+        watching = true;
+        thread = new Thread(this, "picollo-deployment-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    synchronized void stop() {
+        watching = false;
+        close();
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    boolean isWatching() {
+        return watching;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (watching) {
+                final WatchKey key = pending.isEmpty() ? watchService.take() : watchService.poll(quietPeriod, TimeUnit.MILLISECONDS);
+
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == OVERFLOW) {
+                            markAll();
+                        } else {
+                            mark(directory.resolve((Path) event.context()));
+                        }
+                    }
+                    if (!key.reset()) {
+                        log.warn("Deployment directory {} is no longer accessible, falling back to polling.", directory);
+                        watching = false;
+                    }
+                }
+                final List<Path> ready = collectCompleted();
+                if (!ready.isEmpty()) {
+                    try {
+                        listener.accept(ready);
+                    } catch (RuntimeException e) {
+                        log.error("Error deploying modules {}, message = {}", ready, e.getMessage(), e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            log.debug("Deployment directory watcher closed.");
+        } finally {
+            watching = false;
+        }
+    }
+
+    private void mark(final Path path) {
+        if (Deployer.isDeployable(path)) {
+            pending.put(path, Snapshot.of(path));
+        }
+    }
+
+    private void markAll() {
+        try (Stream<Path> stream = Files.list(directory)) {
+            stream.collect(Collectors.toList()).forEach(this::mark);
+        } catch (IOException e) {
+            log.error("I/O Error listing deployment directory {}, message = {}", directory, e.getMessage(), e);
+        }
+    }
+
+    private List<Path> collectCompleted() {
+        final List<Path> ret = new ArrayList<>();
+        final long now = System.currentTimeMillis();
+        final Iterator<Map.Entry<Path, Snapshot>> it = pending.entrySet().iterator();
+
+        while (it.hasNext()) {
+            final Map.Entry<Path, Snapshot> entry = it.next();
+            if (!Files.exists(entry.getKey())) {
+                it.remove();
+            } else if (now - entry.getValue().seen >= quietPeriod) {
+                final Snapshot current = Snapshot.of(entry.getKey());
+                if (current.sameAs(entry.getValue())) {
+                    ret.add(entry.getKey());
+                    it.remove();
+                } else {
+                    entry.setValue(current);
+                }
+            }
+        }
+        return ret;
+    }
+
+    private void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.debug("Error closing deployment directory watcher.", e);
+            }
+        }
+    }
+
+    private static final class Snapshot {
+        private final long size;
+        private final long modified;
+        private final long seen;
+
+        private Snapshot(final long size, final long modified) {
+            this.size = size;
+            this.modified = modified;
+            this.seen = System.currentTimeMillis();
+        }
+
+        static Snapshot of(final Path path) {
+            try {
+                return new Snapshot(Files.size(path), Files.getLastModifiedTime(path).toMillis());
+            } catch (IOException e) {
+                return new Snapshot(-1, -1);
+            }
+        }
+
+        boolean sameAs(final Snapshot other) {
+            return size >= 0 && size == other.size && modified == other.modified;
+        }
+    }
+}
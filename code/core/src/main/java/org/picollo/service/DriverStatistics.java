@@ -0,0 +1,220 @@
+/*
+ * DriverStatistics.java
+ */
+package org.picollo.service;
+
+import lombok.Getter;
+import org.picollo.context.PicolloContext;
+import org.picollo.driver.DriverInterface;
+import org.picollo.driver.DriverState;
+import org.picollo.service.bundle.ModuleEntry;
+import org.picollo.service.bundle.ModuleRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime statistics of the drivers of the installed modules: state transitions, runs, run durations and time spent
+ * RUNNING. The driver interface only exposes its current state, with no callback when a run starts or ends, so a
+ * single probe thread reads the state of every driver each application.drivers.probe-interval and derives the runs
+ * from the transitions it sees. Runs shorter than the interval can be missed and durations are rounded to it.
+ * <p>
+ * Every probe looks up the driver of every active module, so the statistics are a diagnostic to turn on with
+ * application.drivers.enabled rather than always on, with a probe interval matching the length of the runs.
+ * <p>
+ * The probe thread is the only writer, counters are lock-free and read without blocking it.
+ * @author rod
+ * @since 2026-10
+ */
+@Component
+public class DriverStatistics {
+    private static final Logger log = LoggerFactory.getLogger(DriverStatistics.class);
+    /** Run duration buckets, bucket i counts the runs up to 2^i ms, the last one every longer run. */
+    public static final int BUCKETS = 24;
+    private static final String NONE = "NONE";
+    @Value("${application.drivers.enabled:false}")
+    private boolean enabled;
+    @Value("${application.drivers.probe-interval:1000}")
+    private long probeInterval;
+    @Autowired
+    private ModuleRegistry moduleRegistry;
+    private final Map<String, Driver> drivers = new ConcurrentHashMap<>();
+    private ScheduledExecutorService probe;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("Driver statistics are disabled.");
+            return;
+        }
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("picollo-drivers-");
+        threadFactory.setDaemon(true);
+        probe = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        probe.scheduleWithFixedDelay(this::probe, probeInterval, probeInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void finish() {
+        if (probe != null) {
+            probe.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the statistics of every driver seen since the application started, by driver name.
+     */
+    public Map<String, Driver> drivers() {
+        return Collections.unmodifiableMap(drivers);
+    }
+
+    public Optional<Driver> find(final String name) {
+        return Optional.ofNullable(drivers.get(name));
+    }
+
+    /**
+     * Reads the state of the driver of every active module. A driver whose module is gone keeps its statistics and
+     * is reported without state.
+     */
+    private void probe() {
+        try {
+            final long now = System.nanoTime();
+            final Set<String> seen = new HashSet<>();
+            for (ModuleEntry m : moduleRegistry.modules()) {
+                final Optional<DriverInterface> driver = m.isActiveOrResolved() && m.getSymbolicName() != null
+                    ? PicolloContext.getDriver(m.getSymbolicName()) : Optional.empty();
+                if (driver.isPresent()) {
+                    final String name = driver.get().getName() == null ? m.getSymbolicName() : driver.get().getName();
+                    final Driver d = drivers.computeIfAbsent(name, n -> new Driver(n, now));
+                    d.observe(driver.get().getState(), now);
+                    seen.add(name);
+                }
+            }
+            for (Driver d : drivers.values()) {
+                if (!seen.contains(d.name)) {
+                    d.observe(null, now);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.debug("Error probing driver states, message = {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Statistics of a driver. Written by the probe thread only.
+     */
+    public static final class Driver {
+        @Getter
+        private final String name;
+        private final LongAdder runs = new LongAdder();
+        private final LongAdder runningNanos = new LongAdder();
+        private final AtomicLongArray durations = new AtomicLongArray(BUCKETS);
+        private final Map<String, LongAdder> transitions = new ConcurrentHashMap<>();
+        private volatile DriverState state;
+        private volatile long since;
+
+        private Driver(final String name, final long now) {
+            this.name = name;
+            this.since = now;
+        }
+
+        private void observe(final DriverState current, final long now) {
+            final DriverState previous = state;
+
+            if (previous == current) {
+                return;
+            }
+            transitions.computeIfAbsent(nameOf(previous) + "->" + nameOf(current), t -> new LongAdder()).increment();
+            if (previous == DriverState.RUNNING) {
+                final long elapsed = now - since;
+                runningNanos.add(elapsed);
+                durations.incrementAndGet(bucket(TimeUnit.NANOSECONDS.toMillis(elapsed)));
+            }
+            if (current == DriverState.RUNNING) {
+                runs.increment();
+            }
+            state = current;
+            since = now;
+        }
+
+        /**
+         * @return the current state name, or NONE when the driver is no longer registered.
+         */
+        public String getState() {
+            return nameOf(state);
+        }
+
+        public long getRuns() {
+            return runs.sum();
+        }
+
+        /**
+         * @return 1 while the driver is RUNNING, a driver runs one execution at a time.
+         */
+        public int getInFlight() {
+            return state == DriverState.RUNNING ? 1 : 0;
+        }
+
+        /**
+         * @return the time spent RUNNING in milliseconds, the current run included.
+         */
+        public long getRunningMillis() {
+            final long since = this.since;
+            final long current = state == DriverState.RUNNING ? System.nanoTime() - since : 0;
+            return TimeUnit.NANOSECONDS.toMillis(runningNanos.sum() + current);
+        }
+
+        /**
+         * @return the number of times each transition has been seen, such as "NONE->RUNNING".
+         */
+        public Map<String, Long> getTransitions() {
+            final Map<String, Long> ret = new LinkedHashMap<>();
+            transitions.forEach((t, count) -> ret.put(t, count.sum()));
+            return ret;
+        }
+
+        /**
+         * @return the number of finished runs by duration upper bound in milliseconds, "+Inf" for the last bucket.
+         */
+        public Map<String, Long> getDurations() {
+            final Map<String, Long> ret = new LinkedHashMap<>();
+
+            for (int i = 0; i < BUCKETS; i++) {
+                final long count = durations.get(i);
+                if (count > 0) {
+                    ret.put(i == BUCKETS - 1 ? "+Inf" : Long.toString(1L << i), count);
+                }
+            }
+            return ret;
+        }
+
+        private static int bucket(final long millis) {
+            return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, millis - 1)));
+        }
+
+        private static String nameOf(final DriverState state) {
+            return state == null ? NONE : state.name();
+        }
+    }
+}
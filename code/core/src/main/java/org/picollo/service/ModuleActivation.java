@@ -0,0 +1,153 @@
+/*
+ * ModuleActivation.java
+ */
+package org.picollo.service;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+import org.picollo.context.PicolloContext;
+import org.picollo.driver.DriverInterface;
+import org.picollo.driver.DriverState;
+import org.picollo.service.bundle.ModuleEntry;
+import org.picollo.service.bundle.ModuleRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Activates lazy modules on demand instead of at startup. A module is lazy when its manifest declares
+ * Bundle-ActivationPolicy: lazy. Lazy modules are resolved and started with their activation policy, the framework
+ * activates them when a class is first loaded from them, such as their driver on its first lookup.
+ * <p>
+ * When application.activation.idle-timeout is set, active lazy modules whose driver has not been seen running for
+ * that long are stopped and armed again, releasing what their activator holds. The driver of every active lazy
+ * module is looked up once per application.activation.passivation-interval for that.
+ * @author rod
+ * @since 2026-10
+ */
+@Component
+public class ModuleActivation {
+    private static final Logger log = LoggerFactory.getLogger(ModuleActivation.class);
+    @Value("${application.activation.idle-timeout:0}")
+    private long idleTimeout;
+    @Autowired
+    private ModuleRegistry moduleRegistry;
+    private final Set<Long> armed = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Long> busySince = new ConcurrentHashMap<>();
+
+    /**
+     * @return true when the module is activated on demand.
+     */
+    public boolean isLazy(final Bundle bundle) {
+        final String policy = bundle.getHeaders().get(Constants.BUNDLE_ACTIVATIONPOLICY);
+        return policy != null && policy.trim().startsWith(Constants.ACTIVATION_LAZY);
+    }
+
+    /**
+     * @return true when the module is lazy and waits for its activation.
+     */
+    public boolean isArmed(final Bundle bundle) {
+        return armed.contains(bundle.getBundleId()) && bundle.getState() != Bundle.ACTIVE;
+    }
+
+    /**
+     * Starts a module, or arms it when it is lazy and not in demand.
+     * @param bundle module bundle, installed.
+     * @param demanded true when the module is needed right away, such as the new version of an active module.
+     * @throws BundleException when the module cannot be started or resolved.
+     */
+    public void start(final Bundle bundle, final boolean demanded) throws BundleException {
+        if (demanded || !isLazy(bundle)) {
+            armed.remove(bundle.getBundleId());
+            bundle.start();
+        } else {
+            arm(bundle);
+            log.info("Module {} will be activated on demand.", bundle.getSymbolicName());
+        }
+    }
+
+    /**
+     * Arms the lazy modules among the given ones, resolving them in a single pass.
+     * @param modules modules to start.
+     * @return the modules which are not lazy and still have to be started.
+     */
+    public List<ModuleEntry> defer(final Collection<ModuleEntry> modules) {
+        final List<ModuleEntry> ret = new ArrayList<>();
+        final List<Bundle> lazy = new ArrayList<>();
+
+        for (ModuleEntry m : modules) {
+            if (isLazy(m.getBundle())) {
+                lazy.add(m.getBundle());
+            } else {
+                ret.add(m);
+            }
+        }
+        if (lazy.isEmpty()) {
+            return ret;
+        }
+        moduleRegistry.wiring().resolveBundles(lazy);
+        for (Bundle b : lazy) {
+            try {
+                arm(b);
+            } catch (BundleException e) {
+                log.error("Error arming lazy module {}, message = {}", b.getSymbolicName(), e.getMessage(), e);
+            }
+        }
+        log.info("{} lazy modules will be activated on demand.", lazy.size());
+        return ret;
+    }
+
+    /**
+     * Stops and arms again the active lazy modules idle for longer than application.activation.idle-timeout. A module
+     * is idle from the first pass seeing it active, or from the last pass seeing its driver RUNNING.
+     */
+    @Scheduled(initialDelayString = "${application.activation.passivation-interval:60000}", fixedDelayString = "${application.activation.passivation-interval:60000}")
+    public void passivate() {
+        if (idleTimeout <= 0) {
+            return;
+        }
+        final long now = System.nanoTime();
+        final long timeout = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+        for (ModuleEntry m : moduleRegistry.modules()) {
+            final Bundle bundle = m.getBundle();
+            if (bundle.getState() != Bundle.ACTIVE || !isLazy(bundle)) {
+                busySince.remove(m.getBundleId());
+                continue;
+            }
+            final Optional<DriverInterface> driver = PicolloContext.getDriver(m.getSymbolicName());
+            if (driver.isPresent() && driver.get().getState() == DriverState.RUNNING) {
+                busySince.put(m.getBundleId(), now);
+                continue;
+            }
+            final long idle = now - busySince.computeIfAbsent(m.getBundleId(), id -> now);
+            if (idle > timeout) {
+                try {
+                    bundle.stop();
+                    arm(bundle);
+                    busySince.remove(m.getBundleId());
+                    log.info("Module {} idle for {} ms, passivated.", m.getSymbolicName(), TimeUnit.NANOSECONDS.toMillis(idle));
+                } catch (BundleException | IllegalStateException e) {
+                    log.warn("Error passivating module {}, message = {}", m.getSymbolicName(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void arm(final Bundle bundle) throws BundleException {
+        bundle.start(Bundle.START_ACTIVATION_POLICY);
+        armed.add(bundle.getBundleId());
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * ModuleDeployment.java
+ */
+package org.picollo.service;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Version;
+import org.picollo.service.bundle.BundleDescriptor;
+
+import java.nio.file.Path;
+
+/**
+ * State of a single module file while the {@link Deployer} installs it.
+ * @author rod
+ * @since 2026-10
+ */
+@Getter
+final class ModuleDeployment {
+    private final Path source;
+    private final Path target;
+    private final BundleDescriptor descriptor;
+    private final String sha256;
+    private final Bundle previous;
+    /** True when the previous version was active, its replacement is then started right away even when lazy. */
+    private final boolean previousActive;
+    @Setter
+    private Bundle installed;
+
+    ModuleDeployment(final Path source, final Path target, final BundleDescriptor descriptor, final String sha256,
+                     final Bundle previous) {
+        this.source = source;
+        this.target = target;
+        this.descriptor = descriptor;
+        this.sha256 = sha256;
+        this.previous = previous;
+        this.previousActive = previous != null && previous.getState() == Bundle.ACTIVE;
+    }
+
+    /**
+     * The framework does not allow two bundles with the same symbolic name and version, such upgrades have to
+     * replace the previous bundle instead of running beside it.
+     * @return true when the new version can be installed while the previous one is still installed.
+     */
+    boolean canRunSideBySide() {
+        try {
+            return previous != null
+                && (!previous.getSymbolicName().equals(descriptor.getSymbolicName())
+                    || !previous.getVersion().equals(Version.parseVersion(descriptor.getVersion())));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return source.toString();
+    }
+}
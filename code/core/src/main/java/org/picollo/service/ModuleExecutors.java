@@ -0,0 +1,240 @@
+/*
+ * ModuleExecutors.java
+ */
+package org.picollo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.SynchronousBundleListener;
+import org.picollo.service.bundle.ModuleRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulkheads of the modules: every active module gets its own bounded executor, so a module flooding its pool cannot
+ * take the threads of its neighbours. The executor is created when the module starts and registered as an
+ * {@link ExecutorService} OSGi service with the {@link #MODULE} property set to the module symbolic name, a module
+ * looks it up with the filter (picollo.module=its symbolic name). It is shut down when the module has stopped and
+ * drained on a thread of its own, so the thread stopping the module is not held.
+ * <p>
+ * The pool size comes from the Module-Threads header and the queue capacity from Module-Queue, or
+ * application.bulkhead.threads and application.bulkhead.queue. When the pool and its queue are full, tasks are
+ * rejected, or run by the submitting thread with application.bulkhead.rejection: caller-runs, which slows the
+ * module down instead of failing its work. Active threads, queued tasks, saturation and rejections are published
+ * as Micrometer meters tagged by module and bundle id, so two versions of a module running side by side during a
+ * swap never share their meters. The meters of a module are removed as soon as it has stopped.
+ * @author rod
+ * @since 2026-10
+ */
+@Component
+public class ModuleExecutors implements SynchronousBundleListener {
+    public static final String MODULE = "picollo.module";
+    public static final String MODULE_THREADS = "Module-Threads";
+    public static final String MODULE_QUEUE = "Module-Queue";
+    private static final Logger log = LoggerFactory.getLogger(ModuleExecutors.class);
+    private static final String METER_PREFIX = "picollo.module.executor.";
+    private static final String CALLER_RUNS = "caller-runs";
+    @Value("${application.bulkhead.threads:4}")
+    private int defaultThreads;
+    @Value("${application.bulkhead.queue:256}")
+    private int defaultQueue;
+    @Value("${application.bulkhead.rejection:abort}")
+    private String rejection;
+    @Value("${application.bulkhead.drain-timeout:10000}")
+    private long drainTimeout;
+    @Autowired
+    private ModuleRegistry moduleRegistry;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    private final Map<Long, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+    private ExecutorService drainer;
+
+    @PostConstruct
+    public void init() {
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("picollo-bulkhead-drain-");
+        threadFactory.setDaemon(true);
+        drainer = Executors.newCachedThreadPool(threadFactory);
+    }
+
+    /**
+     * Listens to the module lifecycle and gives the modules already active their executor.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void attach() {
+        final BundleContext context = moduleRegistry.context();
+
+        context.addBundleListener(this);
+        for (Bundle b : context.getBundles()) {
+            if (b.getState() == Bundle.ACTIVE) {
+                create(b);
+            }
+        }
+    }
+
+    /**
+     * Drains the executors of the modules still active and waits for every drain, up to the drain timeout.
+     */
+    @PreDestroy
+    public void finish() throws InterruptedException {
+        new ArrayList<>(bulkheads.keySet()).forEach(this::drain);
+        drainer.shutdown();
+        if (!drainer.awaitTermination(drainTimeout, TimeUnit.MILLISECONDS)) {
+            drainer.shutdownNow();
+        }
+    }
+
+    /**
+     * The executor is created before the activator starts, so the activator can already use it, and shut down once
+     * the module has stopped, its services being unregistered by then. Listeners are called on the thread stopping
+     * the module, which must not wait for the tasks of the module.
+     */
+    @Override
+    public void bundleChanged(final BundleEvent event) {
+        if (event.getType() == BundleEvent.STARTING) {
+            create(event.getBundle());
+        } else if (event.getType() == BundleEvent.STOPPED) {
+            drain(event.getBundle().getBundleId());
+        }
+    }
+
+    private void create(final Bundle bundle) {
+        final BundleContext context = bundle.getBundleContext();
+
+        if (bundle.getBundleId() == 0 || context == null || bundle.getSymbolicName() == null || bulkheads.containsKey(bundle.getBundleId())) {
+            return;
+        }
+        final int threads = size(bundle, MODULE_THREADS, defaultThreads);
+        final int queue = size(bundle, MODULE_QUEUE, defaultQueue);
+        final Bulkhead bulkhead = new Bulkhead(bundle.getSymbolicName(), bundle.getBundleId(), threads, queue);
+        final Hashtable<String, Object> properties = new Hashtable<>();
+        properties.put(MODULE, bundle.getSymbolicName());
+        try {
+            bulkhead.registration = context.registerService(ExecutorService.class, bulkhead.executor, properties);
+        } catch (IllegalStateException e) {
+            bulkhead.executor.shutdownNow();
+            bulkhead.meters.forEach(meterRegistry::remove);
+            return;
+        }
+        bulkheads.put(bundle.getBundleId(), bulkhead);
+        log.info("Module {} runs on {} threads with a queue of {} tasks.", bulkhead.module, threads, queue);
+    }
+
+    /**
+     * Removes the meters of a module and shuts down its executor, it runs the tasks already queued and rejects the
+     * new ones. The meters go right away, before the module can be started again and register its own. The wait for
+     * those tasks, bounded by the drain timeout, runs on the drainer.
+     */
+    private void drain(final long bundleId) {
+        final Bulkhead bulkhead = bulkheads.remove(bundleId);
+
+        if (bulkhead == null) {
+            return;
+        }
+        try {
+            bulkhead.registration.unregister();
+        } catch (IllegalStateException e) {
+            // Already unregistered by the framework when the module stopped
+        }
+        bulkhead.meters.forEach(meterRegistry::remove);
+        bulkhead.executor.shutdown();
+        try {
+            drainer.execute(() -> await(bulkhead));
+        } catch (RejectedExecutionException e) {
+            bulkhead.executor.shutdownNow();
+        }
+    }
+
+    private void await(final Bulkhead bulkhead) {
+        try {
+            if (!bulkhead.executor.awaitTermination(drainTimeout, TimeUnit.MILLISECONDS)) {
+                final int dropped = bulkhead.executor.shutdownNow().size();
+                log.warn("Executor of module {} has not drained in {} ms, {} queued tasks dropped.", bulkhead.module, drainTimeout, dropped);
+            }
+        } catch (InterruptedException e) {
+            bulkhead.executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int size(final Bundle bundle, final String header, final int defaultValue) {
+        final String value = bundle.getHeaders().get(header);
+
+        try {
+            return value == null ? defaultValue : Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Invalid {} header {} in module {}, using {}.", header, value, bundle.getSymbolicName(), defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Executor of a module with its meters.
+     */
+    private final class Bulkhead {
+        private final String module;
+        private final ThreadPoolExecutor executor;
+        private final List<Meter> meters = new ArrayList<>();
+        private ServiceRegistration<ExecutorService> registration;
+
+        private Bulkhead(final String module, final long bundleId, final int threads, final int queue) {
+            final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("picollo-" + module + "-");
+            final Tags tags = Tags.of("module", module, "bundle", Long.toString(bundleId));
+            final Counter rejected = Counter.builder(METER_PREFIX + "rejected")
+                .description("Tasks rejected or run by the caller because the module executor is full")
+                .tags(tags)
+                .register(meterRegistry);
+            final RejectedExecutionHandler handler = CALLER_RUNS.equalsIgnoreCase(rejection)
+                ? new ThreadPoolExecutor.CallerRunsPolicy() : new ThreadPoolExecutor.AbortPolicy();
+
+            threadFactory.setDaemon(true);
+            this.module = module;
+            this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queue),
+                threadFactory, (task, pool) -> {
+                    rejected.increment();
+                    handler.rejectedExecution(task, pool);
+                });
+            meters.add(rejected);
+            meters.add(Gauge.builder(METER_PREFIX + "active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Threads of the module executor running a task")
+                .tags(tags)
+                .register(meterRegistry));
+            meters.add(Gauge.builder(METER_PREFIX + "queued", executor, e -> e.getQueue().size())
+                .description("Tasks waiting in the module executor queue")
+                .tags(tags)
+                .register(meterRegistry));
+            meters.add(Gauge.builder(METER_PREFIX + "saturation", executor,
+                    e -> (double) (e.getActiveCount() + e.getQueue().size()) / (threads + queue))
+                .description("Share of the module executor threads and queue in use, 1 when new tasks are rejected")
+                .tags(tags)
+                .register(meterRegistry));
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * ModuleOperations.java
+ */
+package org.picollo.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+import org.picollo.service.bundle.BundleLocations;
+import org.picollo.service.bundle.BundleStore;
+import org.picollo.service.bundle.ModuleEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Applies a lifecycle action to a set of installed modules at once. The modules are grouped in waves following
+ * their wiring: modules are started after the modules they are wired to and stopped or uninstalled before them, and
+ * the modules of a wave are handled in parallel on the deployment executor.
+ * @author rod
+ * @since 2026-10
+ */
+@Component
+public class ModuleOperations {
+    private static final Logger log = LoggerFactory.getLogger(ModuleOperations.class);
+
+    public enum Action {
+        START,
+        STOP,
+        UNINSTALL,
+        REFRESH;
+
+        /**
+         * @param name action name, ignoring case.
+         * @return the action, or null when the name is unknown.
+         */
+        public static Action of(final String name) {
+            for (Action a : values()) {
+                if (a.name().equalsIgnoreCase(name)) {
+                    return a;
+                }
+            }
+            return null;
+        }
+    }
+
+    @Autowired
+    private BundleDrainer bundleDrainer;
+    @Autowired
+    private BundleStore bundleStore;
+    @Autowired
+    private DeploymentJournal deploymentJournal;
+    @Autowired
+    @Qualifier("deploymentExecutor")
+    private ExecutorService executor;
+
+    /**
+     * @param action action to apply.
+     * @param modules modules to apply the action to.
+     * @return the outcome of the action on every module, in the order the modules were handled.
+     * @throws InterruptedException when the calling thread is interrupted.
+     */
+    public List<Result> apply(final Action action, final Collection<ModuleEntry> modules) throws InterruptedException {
+        final List<Bundle> bundles = modules.stream().map(ModuleEntry::getBundle).collect(Collectors.toList());
+
+        log.info("Applying {} to {} modules", action, bundles.size());
+        if (action == Action.REFRESH) {
+            return refresh(bundles);
+        }
+        final List<List<Bundle>> waves = DeploymentPlan.waves(bundles, ModuleOperations::providers);
+        if (action != Action.START) {
+            Collections.reverse(waves);
+        }
+
+        final List<Result> ret = new ArrayList<>();
+        for (List<Bundle> wave : waves) {
+            final List<Future<Result>> pending = new ArrayList<>();
+            for (Bundle b : wave) {
+                pending.add(executor.submit(() -> run(action, b)));
+            }
+            for (int i = 0; i < pending.size(); i++) {
+                try {
+                    ret.add(pending.get(i).get());
+                } catch (ExecutionException e) {
+                    ret.add(new Result(wave.get(i), action, 0, e.getCause()));
+                }
+            }
+        }
+        if (action == Action.UNINSTALL) {
+            final List<Bundle> uninstalled = ret.stream().filter(Result::isSucceeded).map(r -> r.bundle)
+                .collect(Collectors.toList());
+            if (!uninstalled.isEmpty()) {
+                bundleDrainer.refresh(uninstalled);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Stops and uninstalls a module, deleting its file from the deployment directory. The framework wiring is not
+     * refreshed.
+     * @param bundle module bundle.
+     * @throws BundleException when the bundle cannot be stopped or uninstalled.
+     * @throws IOException when the module file cannot be deleted.
+     */
+    public void uninstall(final Bundle bundle) throws BundleException, IOException {
+        bundle.stop();
+        bundle.uninstall();
+        deploymentJournal.uninstalled(bundle);
+        Files.deleteIfExists(BundleLocations.toPath(bundle.getLocation()));
+        bundleStore.forget(bundle.getSymbolicName());
+    }
+
+    private Result run(final Action action, final Bundle bundle) {
+        final long start = System.nanoTime();
+
+        try {
+            switch (action) {
+                case START:
+                    bundle.start();
+                    deploymentJournal.installed(bundle, null);
+                    break;
+                case STOP:
+                    bundle.stop();
+                    deploymentJournal.installed(bundle, null);
+                    break;
+                case UNINSTALL:
+                    uninstall(bundle);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported action " + action);
+            }
+            return new Result(bundle, action, elapsed(start), null);
+        } catch (BundleException | IOException | RuntimeException e) {
+            log.error("Error running action {} in module {}", action, bundle.getSymbolicName(), e);
+            return new Result(bundle, action, elapsed(start), e);
+        }
+    }
+
+    private List<Result> refresh(final List<Bundle> bundles) throws InterruptedException {
+        final long start = System.nanoTime();
+
+        bundleDrainer.refresh(bundles);
+        final long elapsed = elapsed(start);
+        return bundles.stream().map(b -> new Result(b, Action.REFRESH, elapsed, null)).collect(Collectors.toList());
+    }
+
+    /**
+     * @return the bundles the given bundle is wired to.
+     */
+    private static Collection<Bundle> providers(final Bundle bundle) {
+        final BundleWiring wiring = bundle.adapt(BundleWiring.class);
+
+        if (wiring == null) {
+            return Collections.emptyList();
+        }
+        final List<BundleWire> wires = wiring.getRequiredWires(null);
+        return wires == null ? Collections.emptyList()
+            : wires.stream().map(w -> w.getProvider().getBundle()).collect(Collectors.toList());
+    }
+
+    private static long elapsed(final long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * Outcome of an action on a module.
+     */
+    @Getter
+    public static final class Result {
+        private final String name;
+        private final String version;
+        private final String action;
+        private final boolean succeeded;
+        private final String message;
+        private final long millis;
+        @Getter(AccessLevel.NONE)
+        private final Bundle bundle;
+
+        private Result(final Bundle bundle, final Action action, final long millis, final Throwable error) {
+            this.bundle = bundle;
+            this.name = bundle.getSymbolicName();
+            this.version = bundle.getVersion().toString();
+            this.action = action.name().toLowerCase(Locale.ROOT);
+            this.succeeded = error == null;
+            this.message = error == null ? null : error.getMessage();
+            this.millis = millis;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * ModuleReplicator.java
+ */
+package org.picollo.service;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.picollo.service.StagingArea.StagedFile;
+import org.picollo.service.bundle.BundleStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Distributes uploaded modules to the other nodes of the cluster. The node receiving an upload keeps the module
+ * content in the bundle store and advertises its hash to the configured peers, split in fan-out groups: the head of
+ * each group pulls the module, deploys it and advertises it in turn to the rest of its group, so every node sends
+ * the module to a few others only. Modules are pulled in chunks with Range requests, spread over the nodes already
+ * holding the content, and their SHA-256 is checked before they are deployed.
+ * @author rod
+ * @since 2026-10
+ */
+@Component
+public class ModuleReplicator {
+    private static final Logger log = LoggerFactory.getLogger(ModuleReplicator.class);
+    public static final String BLOBS_PATH = "/modules/blobs/";
+    public static final String REPLICATE_PATH = "/modules/replicate";
+    @Value("${application.replication.url:}")
+    private String url;
+    @Value("${application.replication.peers:}")
+    private String[] peers;
+    @Value("${application.replication.fan-out:3}")
+    private int fanOut;
+    @Value("${application.replication.chunk-size:1048576}")
+    private int chunkSize;
+    @Value("${application.replication.timeout:30000}")
+    private int timeout;
+    @Value("${application.replication.parallelism:4}")
+    private int parallelism;
+    @Autowired
+    private BundleStore bundleStore;
+    @Autowired
+    private StagingArea stagingArea;
+    @Autowired
+    private DeploymentJobs deploymentJobs;
+    private RestTemplate restTemplate;
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        final SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeout);
+        requestFactory.setReadTimeout(timeout);
+        restTemplate = new RestTemplate(requestFactory);
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("picollo-replication-");
+        threadFactory.setDaemon(true);
+        executor = Executors.newFixedThreadPool(parallelism, threadFactory);
+    }
+
+    @PreDestroy
+    public void finish() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return true when this node has peers and an URL they can reach it at.
+     */
+    public boolean isEnabled() {
+        return !url.isEmpty() && peers.length > 0;
+    }
+
+    /**
+     * Keeps an uploaded module in the bundle store and advertises it to the peers. Does nothing when replication
+     * is not configured.
+     * @param staged uploaded module, still in the staging area.
+     * @param priority deployment priority, passed on to the peers.
+     * @throws IOException when the module cannot be kept in the bundle store.
+     */
+    public void replicate(final StagedFile staged, final int priority) throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        bundleStore.share(staged.getFile(), staged.getSha256());
+        final Advertisement advertisement = new Advertisement(staged.getFileName(), staged.getSha256(), staged.getSize(),
+            priority, Collections.emptyList(), peers());
+        executor.execute(() -> forward(advertisement, true));
+    }
+
+    /**
+     * Accepts a module advertised by another node: pulls it unless already stored, deploys it and advertises it to
+     * the nodes it has been delegated, even when the pull has failed, since the rest of its group only hears of the
+     * module through this node. The nodes to pull from and to advertise to must all be configured peers, so an
+     * advertisement cannot make this node reach any other address.
+     * @param advertisement advertised module.
+     * @throws IllegalArgumentException when the advertisement is invalid or names a node which is not a peer.
+     */
+    public void accept(final Advertisement advertisement) {
+        if (!isEnabled()) {
+            throw new IllegalArgumentException("Module replication is not enabled on this node.");
+        }
+        final Set<String> known = peers().stream().map(ModuleReplicator::normalize).collect(Collectors.toSet());
+        if (advertisement.getSources() == null || advertisement.getTargets() == null) {
+            throw new IllegalArgumentException("Module advertisement without sources or targets.");
+        }
+        final List<String> nodes = new ArrayList<>(advertisement.getSources());
+        nodes.addAll(advertisement.getTargets());
+        for (String node : nodes) {
+            if (node == null || !known.contains(normalize(node))) {
+                throw new IllegalArgumentException("Node " + node + " is not a replication peer.");
+            }
+        }
+        if (advertisement.getSha256() == null || !advertisement.getSha256().matches("[0-9a-fA-F]{64}")) {
+            throw new IllegalArgumentException("Invalid module digest " + advertisement.getSha256());
+        }
+        final String fileName = advertisement.getFileName();
+        if (fileName == null || fileName.contains("..") || fileName.contains("/") || fileName.contains("\\")) {
+            throw new IllegalArgumentException("Invalid module file name " + fileName);
+        }
+        executor.execute(() -> {
+            boolean pulled = false;
+            try {
+                pull(advertisement);
+                pulled = true;
+            } catch (IOException | RuntimeException e) {
+                log.error("Error replicating module {}, sha256 = {}, message = {}", fileName, advertisement.getSha256(), e.getMessage(), e);
+            } finally {
+                forward(advertisement, pulled);
+            }
+        });
+    }
+
+    /**
+     * @param sha256 module content hash.
+     * @return the stored module content, which peers can pull.
+     */
+    public Optional<Path> blob(final String sha256) {
+        return sha256.matches("[0-9a-fA-F]{64}") ? bundleStore.blob(sha256.toLowerCase()) : Optional.empty();
+    }
+
+    private void pull(final Advertisement advertisement) throws IOException {
+        final String sha256 = advertisement.getSha256().toLowerCase();
+        final Optional<Path> stored = bundleStore.blob(sha256);
+        final StagedFile staged;
+
+        log.info("Pulling module {}, sha256 = {}, from {}", advertisement.getFileName(), sha256, stored.isPresent() ? "the bundle store" : advertisement.getSources());
+        try (InputStream in = stored.isPresent() ? Files.newInputStream(stored.get())
+                : new RemoteContent(advertisement.getSources(), sha256, advertisement.getSize())) {
+            staged = stagingArea.stage(advertisement.getFileName(), in);
+        }
+        if (!staged.matches(sha256)) {
+            stagingArea.discard(staged);
+            throw new IOException("Module " + advertisement.getFileName() + " has digest " + staged.getSha256() + ", expected " + sha256);
+        }
+        bundleStore.share(staged.getFile(), sha256);
+        final DeploymentJob job = deploymentJobs.submit(staged.getFileName(), stagingArea.publish(staged), advertisement.getPriority());
+        log.info("Module {} replicated, sha256 = {}, job = {}.", advertisement.getFileName(), sha256, job.getId());
+    }
+
+    /**
+     * Advertises the module to the nodes delegated to this one, split in fan-out groups. The first node of a
+     * group accepting the advertisement is delegated the rest of the group.
+     * @param holding true when this node holds the module content and can be pulled from.
+     */
+    private void forward(final Advertisement advertisement, final boolean holding) {
+        final List<String> targets = advertisement.getTargets();
+        final int groups = Math.min(Math.max(1, fanOut), targets.size());
+        final List<String> sources = new ArrayList<>(new LinkedHashSet<>(concat(holding ? url : null, advertisement.getSources())));
+
+        for (int g = 0; g < groups; g++) {
+            final List<String> group = targets.subList(g * targets.size() / groups, (g + 1) * targets.size() / groups);
+            for (int i = 0; i < group.size(); i++) {
+                final Advertisement next = new Advertisement(advertisement.getFileName(), advertisement.getSha256(),
+                    advertisement.getSize(), advertisement.getPriority(), sources, new ArrayList<>(group.subList(i + 1, group.size())));
+                try {
+                    restTemplate.postForLocation(group.get(i) + REPLICATE_PATH, next);
+                    log.debug("Module {} advertised to {}, delegating {}", next.getFileName(), group.get(i), next.getTargets());
+                    break;
+                } catch (RestClientException e) {
+                    log.warn("Node {} cannot be advertised module {}, message = {}", group.get(i), next.getFileName(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private List<String> peers() {
+        return Arrays.stream(peers).map(String::trim).filter(p -> !p.isEmpty()).collect(Collectors.toList());
+    }
+
+    /**
+     * @return the node URL without its trailing slashes, ignoring case.
+     */
+    private static String normalize(final String node) {
+        return node.trim().replaceAll("/+$", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> concat(final String first, final List<String> rest) {
+        final List<String> ret = new ArrayList<>();
+
+        if (first != null && !first.isEmpty()) {
+            ret.add(first);
+        }
+        ret.addAll(rest);
+        return ret;
+    }
+
+    /**
+     * Module content pulled chunk by chunk from the nodes holding it. Consecutive chunks are asked to different
+     * nodes, a node failing to answer is left out for the rest of the transfer.
+     */
+    private final class RemoteContent extends InputStream {
+        private final List<String> sources;
+        private final String sha256;
+        private final long size;
+        private long position;
+        private int chunk;
+        private byte[] buffer = new byte[0];
+        private int offset;
+
+        private RemoteContent(final List<String> sources, final String sha256, final long size) {
+            this.sources = new ArrayList<>(sources);
+            this.sha256 = sha256;
+            this.size = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (offset == buffer.length) {
+                if (position >= size) {
+                    return -1;
+                }
+                buffer = fetch(position, Math.min(size, position + chunkSize) - 1);
+                offset = 0;
+                position += buffer.length;
+            }
+            final int ret = Math.min(len, buffer.length - offset);
+            System.arraycopy(buffer, offset, b, off, ret);
+            offset += ret;
+            return ret;
+        }
+
+        private byte[] fetch(final long from, final long to) throws IOException {
+            while (!sources.isEmpty()) {
+                final String source = sources.get(chunk++ % sources.size());
+                try {
+                    final byte[] ret = restTemplate.execute(source + BLOBS_PATH + sha256, HttpMethod.GET,
+                        request -> request.getHeaders().setRange(Collections.singletonList(HttpRange.createByteRange(from, to))),
+                        response -> {
+                            // A node ignoring the range would send the whole module for every chunk
+                            if (response.getRawStatusCode() != HttpStatus.PARTIAL_CONTENT.value()) {
+                                return null;
+                            }
+                            try (InputStream in = response.getBody()) {
+                                return read(in, (int) (to - from + 1));
+                            }
+                        });
+                    if (ret == null) {
+                        log.warn("Node {} does not send ranges of module {}, leaving it out.", source, sha256);
+                    } else if (ret.length == to - from + 1) {
+                        return ret;
+                    } else {
+                        log.warn("Node {} has sent a short chunk of module {}, leaving it out.", source, sha256);
+                    }
+                } catch (RestClientException e) {
+                    log.warn("Node {} cannot send module {}, leaving it out. message = {}", source, sha256, e.getMessage());
+                }
+                sources.remove(source);
+            }
+            throw new IOException("No node can send module " + sha256 + " from byte " + from + ".");
+        }
+
+        /**
+         * @return the next bytes of the stream up to the given length, fewer when it ends before.
+         */
+        private byte[] read(final InputStream in, final int length) throws IOException {
+            final byte[] ret = new byte[length];
+            int read = 0;
+
+            while (read < length) {
+                final int n = in.read(ret, read, length - read);
+                if (n < 0) {
+                    return Arrays.copyOf(ret, read);
+                }
+                read += n;
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * Module advertised to a node, with the nodes it can be pulled from and the nodes the receiver has to advertise
+     * it to.
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static final class Advertisement {
+        private String fileName;
+        private String sha256;
+        private long size;
+        private int priority;
+        private List<String> sources = new ArrayList<>();
+        private List<String> targets = new ArrayList<>();
+
+        public Advertisement(final String fileName, final String sha256, final long size, final int priority,
+                             final List<String> sources, final List<String> targets) {
+            this.fileName = fileName;
+            this.sha256 = sha256;
+            this.size = size;
+            this.priority = priority;
+            this.sources = sources;
+            this.targets = targets;
+        }
+    }
+}
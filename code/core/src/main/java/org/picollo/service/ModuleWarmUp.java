@@ -0,0 +1,153 @@
+/*
+ * ModuleWarmUp.java
+ */
+package org.picollo.service;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.wiring.BundleWiring;
+import org.picollo.service.bundle.BundleDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Warms up a new module version before it takes traffic, as declared by its manifest:
+ * <ul>
+ *     <li>Warm-Up-Packages: comma separated packages whose classes are loaded ahead, or * for every class of the
+ *     module.</li>
+ *     <li>Warm-Up-Class: a {@link Runnable} of the module run repeatedly to exercise its hot paths.</li>
+ *     <li>Warm-Up-Iterations: number of runs, application.deployer.warm-up-iterations by default.</li>
+ * </ul>
+ * The module is resolved but not started yet, so the warm-up class must not depend on its activator. The warm-up
+ * is bounded by application.deployer.warm-up-timeout, after which the module is started anyway.
+ * @author rod
+ * @since 2026-10
+ */
+@Component
+public class ModuleWarmUp {
+    public static final String WARM_UP_PACKAGES = "Warm-Up-Packages";
+    public static final String WARM_UP_CLASS = "Warm-Up-Class";
+    public static final String WARM_UP_ITERATIONS = "Warm-Up-Iterations";
+    private static final Logger log = LoggerFactory.getLogger(ModuleWarmUp.class);
+    private static final String ALL = "*";
+    private static final String CLASS_SUFFIX = ".class";
+    @Value("${application.deployer.warm-up-iterations:1000}")
+    private int defaultIterations;
+    @Value("${application.deployer.warm-up-timeout:30000}")
+    private long timeout;
+
+    /**
+     * @return true when the module manifest asks for a warm-up.
+     */
+    public boolean isDeclared(final BundleDescriptor descriptor) {
+        return descriptor.getHeader(WARM_UP_PACKAGES) != null || descriptor.getHeader(WARM_UP_CLASS) != null;
+    }
+
+    /**
+     * Preloads the declared classes of the module and runs its warm-up class.
+     * @param bundle new module version, installed and not started.
+     * @param descriptor module manifest.
+     * @throws BundleException when a class cannot be loaded or the warm-up class fails.
+     * @throws InterruptedException when the deployment thread is interrupted.
+     */
+    public void warmUp(final Bundle bundle, final BundleDescriptor descriptor) throws BundleException, InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        final String packages = descriptor.getHeader(WARM_UP_PACKAGES);
+        final String warmUpClass = descriptor.getHeader(WARM_UP_CLASS);
+        int loaded = 0;
+        int runs = 0;
+
+        if (packages != null) {
+            for (String name : classes(bundle, packages)) {
+                if (System.nanoTime() > deadline) {
+                    break;
+                }
+                load(bundle, name);
+                loaded++;
+            }
+        }
+        if (warmUpClass != null) {
+            final Runnable runnable = instantiate(load(bundle, warmUpClass.trim()), warmUpClass);
+            final int iterations = iterations(descriptor);
+            try {
+                for (; runs < iterations && System.nanoTime() < deadline; runs++) {
+                    runnable.run();
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+            } catch (RuntimeException | LinkageError e) {
+                throw new BundleException("Warm-up of module " + descriptor + " has failed: " + e, BundleException.ACTIVATOR_ERROR, e);
+            }
+        }
+        if (System.nanoTime() > deadline) {
+            log.warn("Warm-up of module {} has not finished in {} ms, starting it anyway.", descriptor, timeout);
+        }
+        log.info("Module {} warmed up, {} classes loaded and {} warm-up runs.", descriptor, loaded, runs);
+    }
+
+    private int iterations(final BundleDescriptor descriptor) {
+        final String value = descriptor.getHeader(WARM_UP_ITERATIONS);
+
+        try {
+            return value == null ? defaultIterations : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid {} header {} in module {}, running {} times.", WARM_UP_ITERATIONS, value, descriptor, defaultIterations);
+            return defaultIterations;
+        }
+    }
+
+    /**
+     * @return the names of the classes of the module in the given packages.
+     */
+    private static List<String> classes(final Bundle bundle, final String packages) {
+        final BundleWiring wiring = bundle.adapt(BundleWiring.class);
+        final List<String> selected = Arrays.stream(packages.split(",")).map(String::trim).collect(Collectors.toList());
+
+        if (wiring == null) {
+            return Collections.emptyList();
+        }
+        final Collection<String> resources = wiring.listResources("/", "*" + CLASS_SUFFIX,
+            BundleWiring.LISTRESOURCES_LOCAL | BundleWiring.LISTRESOURCES_RECURSE);
+        return resources.stream()
+            // Skips package-info, module-info and META-INF entries, which are not loadable classes
+            .filter(r -> !r.contains("-"))
+            .map(r -> r.substring(0, r.length() - CLASS_SUFFIX.length()).replace('/', '.'))
+            .filter(c -> selected.contains(ALL) || selected.contains(packageOf(c)))
+            .collect(Collectors.toList());
+    }
+
+    private static String packageOf(final String className) {
+        final int i = className.lastIndexOf('.');
+        return i < 0 ? "" : className.substring(0, i);
+    }
+
+    private static Class<?> load(final Bundle bundle, final String name) throws BundleException {
+        try {
+            return bundle.loadClass(name);
+        } catch (ClassNotFoundException | LinkageError e) {
+            throw new BundleException("Class " + name + " of module " + bundle.getSymbolicName() + " cannot be loaded: " + e,
+                BundleException.RESOLVE_ERROR, e);
+        }
+    }
+
+    private static Runnable instantiate(final Class<?> type, final String name) throws BundleException {
+        if (!Runnable.class.isAssignableFrom(type)) {
+            throw new BundleException("Warm-up class " + name + " is not a Runnable.", BundleException.ACTIVATOR_ERROR);
+        }
+        try {
+            return (Runnable) type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            throw new BundleException("Warm-up class " + name + " cannot be created: " + e, BundleException.ACTIVATOR_ERROR, e);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * StagingArea.java
+ */
+package org.picollo.service;
+
+import lombok.Getter;
+import org.picollo.service.bundle.ContentDigests;
+import org.picollo.service.bundle.Digests;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Receives uploaded modules outside the deployment directory. Uploads are streamed through a bounded buffer while
+ * their SHA-256 is computed, and complete files are moved into a job or release directory of the deployment
+ * directory. The watcher and the directory scan ignore those directories, so the {@link Deployer} never sees a
+ * partially written module and uploads are only deployed through their deployment job.
+ * @author rod
+ * @since 2026-10
+ */
+@Component
+public class StagingArea {
+    private static final Logger log = LoggerFactory.getLogger(StagingArea.class);
+    private static final String APPLICATION_DEPLOYMENT_DIRECTORY = "APPLICATION_DEPLOYMENT-DIRECTORY";
+    private static final String PART = ".part";
+    private static final String RELEASE_PREFIX = ".release-";
+    private static final String JOB_PREFIX = ".job-";
+    @Value("${application.deployment-directory}")
+    private String deployDirectory;
+    @Value("${application.staging-directory:./storage/staging}")
+    private String stagingDirectory;
+    @Value("${application.upload.buffer-size:65536}")
+    private int bufferSize;
+    @Autowired
+    private ContentDigests contentDigests;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (System.getProperty(APPLICATION_DEPLOYMENT_DIRECTORY) != null) {
+            deployDirectory = System.getProperty(APPLICATION_DEPLOYMENT_DIRECTORY);
+        }
+        Files.createDirectories(Paths.get(stagingDirectory));
+        dropUnfinished(RELEASE_PREFIX);
+        dropUnfinished(JOB_PREFIX);
+    }
+
+    /**
+     * Streams a module into the staging area.
+     * @param fileName module file name.
+     * @param in module content.
+     * @return the staged module with its SHA-256.
+     * @throws IOException when the module cannot be written.
+     */
+    public StagedFile stage(final String fileName, final InputStream in) throws IOException {
+        final Path file = Files.createTempFile(Paths.get(stagingDirectory), fileName + ".", PART);
+        final MessageDigest digest = Digests.sha256();
+        final byte[] buffer = new byte[bufferSize];
+        long size = 0;
+
+        try (OutputStream out = Files.newOutputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+                size += read;
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return new StagedFile(fileName, file, Digests.hex(digest.digest()), size);
+    }
+
+    /**
+     * Moves a staged module into a job directory of the deployment directory, which the watcher and the directory
+     * scan ignore, so the module reaches the {@link Deployer} only through its deployment job.
+     * @param staged staged module.
+     * @return the module file in the job directory.
+     * @throws IOException when the module cannot be moved.
+     */
+    public Path publish(final StagedFile staged) throws IOException {
+        final Path directory = Files.createTempDirectory(Paths.get(deployDirectory), JOB_PREFIX);
+        final Path target = directory.resolve(staged.getFileName());
+
+        try {
+            move(staged.getFile(), target);
+        } catch (IOException e) {
+            Files.deleteIfExists(directory);
+            throw e;
+        }
+        contentDigests.remember(target, staged.getSha256());
+        return target;
+    }
+
+    /**
+     * Moves staged modules deployed as one release into a release directory of the deployment directory, which the
+     * watcher and the directory scan ignore, so the modules reach the {@link Deployer} only through their release.
+     * @param staged staged modules.
+     * @return the module files in the release directory, by file name.
+     * @throws IOException when the modules cannot be moved, the modules already moved are dropped.
+     */
+    public Map<String, Path> publishRelease(final Collection<StagedFile> staged) throws IOException {
+        final Path directory = Files.createTempDirectory(Paths.get(deployDirectory), RELEASE_PREFIX);
+        final Map<String, Path> ret = new LinkedHashMap<>();
+
+        try {
+            for (StagedFile s : staged) {
+                final Path target = directory.resolve(s.getFileName());
+                move(s.getFile(), target);
+                contentDigests.remember(target, s.getSha256());
+                ret.put(s.getFileName(), target);
+            }
+        } catch (IOException e) {
+            for (Path p : ret.values()) {
+                Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(directory);
+            throw e;
+        }
+        return ret;
+    }
+
+    /**
+     * The directory is private to the job, a module moved across file stores is not seen before it is complete.
+     */
+    private static void move(final Path source, final Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            log.debug("Staging area and deployment directory are on different file stores, copying {}.", target.getFileName());
+            Files.move(source, target);
+        }
+    }
+
+    /**
+     * Deletes the job or release directories left by a previous run, their deployment jobs have been lost with it.
+     * @param prefix directory name prefix.
+     */
+    private void dropUnfinished(final String prefix) throws IOException {
+        final Path root = Paths.get(deployDirectory);
+
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(root, prefix + "*")) {
+            for (Path directory : directories) {
+                try (Stream<Path> files = Files.list(directory)) {
+                    for (Path f : (Iterable<Path>) files::iterator) {
+                        Files.deleteIfExists(f);
+                    }
+                }
+                Files.deleteIfExists(directory);
+                log.warn("Unfinished upload {} dropped.", directory.getFileName());
+            }
+        }
+    }
+
+    /**
+     * Drops a staged module.
+     * @param staged staged module.
+     */
+    public void discard(final StagedFile staged) {
+        try {
+            Files.deleteIfExists(staged.getFile());
+        } catch (IOException e) {
+            log.error("I/O Error deleting staged module {}, message = {}", staged.getFile(), e.getMessage(), e);
+        }
+    }
+
+    @Getter
+    public static final class StagedFile {
+        private final String fileName;
+        private final Path file;
+        private final String sha256;
+        private final long size;
+
+        private StagedFile(final String fileName, final Path file, final String sha256, final long size) {
+            this.fileName = fileName;
+            this.file = file;
+            this.sha256 = sha256;
+            this.size = size;
+        }
+
+        /**
+         * @param expected SHA-256 supplied by the client, in hexadecimal.
+         * @return true when no digest was supplied or it matches the staged content.
+         */
+        public boolean matches(final String expected) {
+            return expected == null || expected.isEmpty() || expected.equalsIgnoreCase(sha256);
+        }
+    }
+}
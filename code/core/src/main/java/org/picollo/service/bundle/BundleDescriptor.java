@@ -0,0 +1,129 @@
+/*
+ * BundleDescriptor.java
+ */
+package org.picollo.service.bundle;
+
+import lombok.Getter;
+import org.osgi.framework.Constants;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+/**
+ * Immutable view of the manifest headers of a module file, read once by {@link ManifestReader}.
+ * @author rod
+ * @since 2026-10
+ */
+@Getter
+public final class BundleDescriptor {
+    public static final String DRIVER_TYPE = "Driver-Type";
+    private static final String DEFAULT_DRIVER_TYPE = "Core";
+    private static final String OPTIONAL = Constants.RESOLUTION_DIRECTIVE + ":=" + Constants.RESOLUTION_OPTIONAL;
+
+    private final String bundleName;
+    private final String symbolicName;
+    private final String version;
+    private final String driverType;
+    private final String importPackage;
+    private final String exportPackage;
+    private final String requireBundle;
+    private final Set<String> importedPackages;
+    private final Set<String> exportedPackages;
+    private final Set<String> requiredBundles;
+    private final Set<String> mandatoryPackages;
+    private final Set<String> mandatoryBundles;
+    private final Map<String, String> headers;
+
+    private BundleDescriptor(final Map<String, String> headers) {
+        final String type = headers.get(DRIVER_TYPE);
+
+        this.headers = Collections.unmodifiableMap(headers);
+        this.bundleName = headers.get(Constants.BUNDLE_NAME);
+        this.symbolicName = stripDirectives(headers.get(Constants.BUNDLE_SYMBOLICNAME));
+        this.version = headers.get(Constants.BUNDLE_VERSION);
+        this.driverType = type == null || type.isEmpty() ? DEFAULT_DRIVER_TYPE : type;
+        this.importPackage = headers.get(Constants.IMPORT_PACKAGE);
+        this.exportPackage = headers.get(Constants.EXPORT_PACKAGE);
+        this.requireBundle = headers.get(Constants.REQUIRE_BUNDLE);
+        this.importedPackages = names(importPackage, false);
+        this.exportedPackages = names(exportPackage, false);
+        this.requiredBundles = names(requireBundle, false);
+        this.mandatoryPackages = names(importPackage, true);
+        this.mandatoryBundles = names(requireBundle, true);
+    }
+
+    public static BundleDescriptor of(final Manifest manifest) {
+        final Map<String, String> headers = new LinkedHashMap<>();
+
+        for (Map.Entry<Object, Object> entry : manifest.getMainAttributes().entrySet()) {
+            headers.put(((Attributes.Name) entry.getKey()).toString(), (String) entry.getValue());
+        }
+        return new BundleDescriptor(headers);
+    }
+
+    public String getHeader(final String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * @param mandatoryOnly true to drop the clauses with an optional resolution.
+     * @return the names of the clauses of a manifest header, the attributes and directives of each clause dropped.
+     */
+    private static Set<String> names(final String header, final boolean mandatoryOnly) {
+        if (header == null || header.trim().isEmpty()) {
+            return Collections.emptySet();
+        }
+        final Set<String> ret = new LinkedHashSet<>();
+        final Set<String> clause = new LinkedHashSet<>();
+        boolean quoted = false;
+        boolean name = true;
+        boolean optional = false;
+        int start = 0;
+
+        for (int i = 0; i <= header.length(); i++) {
+            final char c = i < header.length() ? header.charAt(i) : ',';
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && (c == ';' || c == ',')) {
+                // A clause lists one or more names before its attributes and directives
+                final String value = header.substring(start, i).trim();
+                if (name && value.indexOf('=') < 0) {
+                    if (!value.isEmpty()) {
+                        clause.add(value);
+                    }
+                } else {
+                    name = false;
+                    optional |= value.replace(" ", "").replace("\"", "").equals(OPTIONAL);
+                }
+                if (c == ',') {
+                    if (!mandatoryOnly || !optional) {
+                        ret.addAll(clause);
+                    }
+                    clause.clear();
+                    name = true;
+                    optional = false;
+                }
+                start = i + 1;
+            }
+        }
+        return Collections.unmodifiableSet(ret);
+    }
+
+    private static String stripDirectives(final String value) {
+        if (value == null) {
+            return null;
+        }
+        final int i = value.indexOf(';');
+        return (i < 0 ? value : value.substring(0, i)).trim();
+    }
+
+    @Override
+    public String toString() {
+        return symbolicName + " " + version + " (" + driverType + ")";
+    }
+}
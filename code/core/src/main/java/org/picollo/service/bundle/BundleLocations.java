@@ -0,0 +1,57 @@
+/*
+ * BundleLocations.java
+ */
+package org.picollo.service.bundle;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Maps bundle locations to module files. The framework prefixes locations installed from a path with "file:./",
+ * bundles installed side by side with another version of the same file carry the version after a '#'.
+ * @author rod
+ * @since 2026-10
+ */
+public final class BundleLocations {
+    private static final String FILE_SCHEME = "file:";
+    private static final String VERSION_SEPARATOR = "#";
+
+    private BundleLocations() {
+    }
+
+    /**
+     * @param location bundle location.
+     * @return the module file the bundle has been installed from.
+     */
+    public static Path toPath(final String location) {
+        String path = location;
+        final int i = path.indexOf(VERSION_SEPARATOR);
+
+        if (i >= 0) {
+            path = path.substring(0, i);
+        }
+        if (path.startsWith(FILE_SCHEME)) {
+            path = path.substring(FILE_SCHEME.length());
+            if (path.startsWith("./")) {
+                path = path.substring(2);
+            }
+        }
+        return Paths.get(path);
+    }
+
+    /**
+     * @param target module file.
+     * @param version module version.
+     * @return a location for a module file that is still in use by another version of the same module.
+     */
+    public static String sideBySide(final Path target, final String version) {
+        return target + VERSION_SEPARATOR + version;
+    }
+
+    /**
+     * @return true when both paths point to the same module file.
+     */
+    public static boolean sameFile(final Path path, final Path other) {
+        return path.toAbsolutePath().normalize().equals(other.toAbsolutePath().normalize());
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * BundleStore.java
+ */
+package org.picollo.service.bundle;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Content addressed store of deployed modules. Every module content is kept once, named by its SHA-256, and the
+ * files in the module directories are hard links to it. An index maps each module symbolic name to the content
+ * currently deployed, which lets the deployer skip redeploys of identical modules.
+ * @author rod
+ * @since 2026-10
+ */
+@Component
+public class BundleStore {
+    private static final Logger log = LoggerFactory.getLogger(BundleStore.class);
+    private static final String INDEX = "index.properties";
+    private static final String EXTENSION = ".jar";
+    @Value("${application.bundle-store:./storage/bundles}")
+    private String storeDirectory;
+    private Path root;
+    private final Properties index = new Properties();
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(storeDirectory);
+        Files.createDirectories(root);
+        final Path indexFile = root.resolve(INDEX);
+        if (Files.exists(indexFile)) {
+            try (InputStream in = Files.newInputStream(indexFile)) {
+                index.load(in);
+            }
+        }
+    }
+
+    /**
+     * @param symbolicName module symbolic name.
+     * @return the SHA-256 of the module content currently deployed.
+     */
+    public Optional<String> indexed(final String symbolicName) {
+        return Optional.ofNullable(index.getProperty(key(symbolicName)));
+    }
+
+    /**
+     * @param sha256 module content hash.
+     * @return the stored module content.
+     */
+    public Optional<Path> blob(final String sha256) {
+        final Path ret = root.resolve(sha256 + EXTENSION);
+        return Files.exists(ret) ? Optional.of(ret) : Optional.empty();
+    }
+
+    /**
+     * Moves a module file into the store, the file is dropped when the same content is already stored.
+     * @param source module file.
+     * @param sha256 SHA-256 of the module file.
+     * @return the stored module content.
+     * @throws IOException when the module cannot be moved.
+     */
+    public Path put(final Path source, final String sha256) throws IOException {
+        final Path blob = root.resolve(sha256 + EXTENSION);
+
+        if (Files.exists(blob)) {
+            Files.delete(source);
+        } else {
+            try {
+                Files.move(source, blob, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                final Path part = root.resolve(sha256 + ".part");
+                Files.move(source, part, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(part, blob, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        return blob;
+    }
+
+    /**
+     * Adds a module content to the store without moving the file, hard linked to it when the file system allows it.
+     * The content is not indexed, it is kept so other nodes can fetch it.
+     * @param file module file.
+     * @param sha256 SHA-256 of the module file.
+     * @return the stored module content.
+     * @throws IOException when the content cannot be stored.
+     */
+    public Path share(final Path file, final String sha256) throws IOException {
+        final Path blob = root.resolve(sha256 + EXTENSION);
+
+        if (!Files.exists(blob)) {
+            final Path part = root.resolve(sha256 + ".part");
+            Files.deleteIfExists(part);
+            try {
+                Files.createLink(part, file);
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                Files.copy(file, part, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(part, blob, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return blob;
+    }
+
+    /**
+     * Places a stored module content at a module file, hard linked when the file system allows it.
+     * @param sha256 module content hash.
+     * @param target module file.
+     * @throws IOException when the module file cannot be created.
+     */
+    public void link(final String sha256, final Path target) throws IOException {
+        final Path blob = root.resolve(sha256 + EXTENSION);
+
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, blob);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            log.debug("Module {} cannot be linked to the store, copying it. message = {}", target, e.getMessage());
+            Files.copy(blob, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Records the content currently deployed for a module and drops the previous content when no other module
+     * uses it.
+     * @param symbolicName module symbolic name.
+     * @param sha256 module content hash.
+     * @throws IOException when the index cannot be written.
+     */
+    public synchronized void record(final String symbolicName, final String sha256) throws IOException {
+        final Object previous = index.setProperty(key(symbolicName), sha256);
+
+        save();
+        if (previous != null && !previous.equals(sha256) && !index.containsValue(previous)) {
+            Files.deleteIfExists(root.resolve(previous + EXTENSION));
+        }
+    }
+
+    /**
+     * Removes a module from the index, dropping its content when no other module uses it.
+     * @param symbolicName module symbolic name.
+     * @throws IOException when the index cannot be written.
+     */
+    public synchronized void forget(final String symbolicName) throws IOException {
+        final Object previous = index.remove(key(symbolicName));
+
+        if (previous != null) {
+            save();
+            if (!index.containsValue(previous)) {
+                Files.deleteIfExists(root.resolve(previous + EXTENSION));
+            }
+        }
+    }
+
+    private void save() throws IOException {
+        final Path part = root.resolve(INDEX + ".part");
+
+        try (OutputStream out = Files.newOutputStream(part)) {
+            index.store(out, "Deployed module contents by symbolic name");
+        }
+        Files.move(part, root.resolve(INDEX), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String key(final String symbolicName) {
+        return symbolicName.toLowerCase(Locale.ROOT);
+    }
+}
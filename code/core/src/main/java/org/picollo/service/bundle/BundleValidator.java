@@ -0,0 +1,220 @@
+/*
+ * BundleValidator.java
+ */
+package org.picollo.service.bundle;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+import org.osgi.framework.Version;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+import org.picollo.driver.DriverType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Checks a module before the running version is touched: its manifest, its Driver-Type against the running version,
+ * and that its mandatory imports and required bundles are provided by the running bundles or by the release, while
+ * the packages the running version provides to other bundles are still exported. Package versions are not matched,
+ * the framework resolver still has the last word when the module is installed.
+ * <p>
+ * The packages provided by the running bundles are read once per {@link ModuleRegistry#generation()}, and the
+ * outcome of each module is cached by content hash until the installed bundles change.
+ * @author rod
+ * @since 2026-10
+ */
+@Component
+public class BundleValidator {
+    private static final int MAX_CACHED = 1024;
+    @Autowired
+    private ModuleRegistry moduleRegistry;
+    private final Map<String, Validation> cache = new ConcurrentHashMap<>();
+    private volatile Snapshot snapshot;
+
+    /**
+     * @param descriptor module manifest.
+     * @param sha256 SHA-256 of the module content.
+     * @param previous running version of the module, or null for a new module.
+     * @param release manifests of the modules deployed together with this one.
+     * @throws BundleException describing the first problem found.
+     */
+    public void validate(final BundleDescriptor descriptor, final String sha256, final Bundle previous,
+                         final Collection<BundleDescriptor> release) throws BundleException {
+        final Validation validation = validation(descriptor, sha256, previous);
+
+        if (!validation.problems.isEmpty()) {
+            throw new BundleException("Module " + descriptor + " is invalid: " + String.join(", ", validation.problems),
+                BundleException.MANIFEST_ERROR);
+        }
+        final String type = previous == null ? null : previous.getHeaders().get(BundleDescriptor.DRIVER_TYPE);
+        if (type != null && !type.equals(descriptor.getDriverType())) {
+            throw new BundleException("Module " + descriptor + " cannot change its Driver-Type from " + type + ".",
+                BundleException.MANIFEST_ERROR);
+        }
+
+        final Set<String> exported = new HashSet<>();
+        final Set<String> symbolicNames = new HashSet<>();
+        for (BundleDescriptor d : release) {
+            exported.addAll(d.getExportedPackages());
+            symbolicNames.add(d.getSymbolicName());
+        }
+        final Set<String> packages = new LinkedHashSet<>(validation.missingPackages);
+        packages.removeAll(exported);
+        final Set<String> bundles = new LinkedHashSet<>(validation.missingBundles);
+        bundles.removeAll(symbolicNames);
+        if (!packages.isEmpty() || !bundles.isEmpty()) {
+            throw new BundleException("Module " + descriptor + " cannot be resolved, missing"
+                + (packages.isEmpty() ? "" : " packages " + packages) + (bundles.isEmpty() ? "" : " bundles " + bundles)
+                + ".", BundleException.RESOLVE_ERROR);
+        }
+        for (Map.Entry<String, Set<String>> e : validation.orphanedPackages.entrySet()) {
+            if (!symbolicNames.containsAll(e.getValue())) {
+                throw new BundleException("Module " + descriptor + " no longer exports package " + e.getKey()
+                    + " used by " + e.getValue() + ".", BundleException.RESOLVE_ERROR);
+            }
+        }
+    }
+
+    private Validation validation(final BundleDescriptor descriptor, final String sha256, final Bundle previous) {
+        final long generation = moduleRegistry.generation();
+        final String key = sha256 + (previous == null ? "" : "@" + previous.getBundleId());
+        final Validation cached = cache.get(key);
+
+        if (cached != null && cached.generation == generation) {
+            return cached;
+        }
+        final Snapshot current = snapshot(generation);
+        final Set<String> missingPackages = new LinkedHashSet<>(descriptor.getMandatoryPackages());
+        missingPackages.removeAll(current.packages);
+        missingPackages.removeAll(descriptor.getExportedPackages());
+        final Set<String> missingBundles = new LinkedHashSet<>(descriptor.getMandatoryBundles());
+        missingBundles.removeAll(current.symbolicNames);
+        final Map<String, Set<String>> orphanedPackages = new LinkedHashMap<>();
+        if (previous != null) {
+            current.consumers.getOrDefault(previous.getBundleId(), Collections.emptyMap()).forEach((p, consumers) -> {
+                if (!descriptor.getExportedPackages().contains(p)) {
+                    orphanedPackages.put(p, consumers);
+                }
+            });
+        }
+
+        final Validation ret = new Validation(generation, problems(descriptor), missingPackages, missingBundles, orphanedPackages);
+        if (cache.size() >= MAX_CACHED) {
+            cache.clear();
+        }
+        cache.put(key, ret);
+        return ret;
+    }
+
+    private static List<String> problems(final BundleDescriptor descriptor) {
+        final List<String> ret = new ArrayList<>();
+        final String manifestVersion = descriptor.getHeader(Constants.BUNDLE_MANIFESTVERSION);
+
+        if (manifestVersion != null && !"2".equals(manifestVersion.trim())) {
+            ret.add("unsupported Bundle-ManifestVersion " + manifestVersion);
+        }
+        if (descriptor.getSymbolicName() == null || descriptor.getSymbolicName().isEmpty()) {
+            ret.add("no Bundle-SymbolicName");
+        }
+        try {
+            Version.parseVersion(descriptor.getVersion());
+        } catch (IllegalArgumentException e) {
+            ret.add("invalid Bundle-Version " + descriptor.getVersion());
+        }
+        if (!isDriverType(descriptor.getDriverType())) {
+            ret.add("unknown Driver-Type " + descriptor.getDriverType());
+        }
+        return ret;
+    }
+
+    private static boolean isDriverType(final String type) {
+        for (DriverType t : DriverType.values()) {
+            if (t.name().equals(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the packages and bundles provided by the resolved bundles at the given generation.
+     */
+    private Snapshot snapshot(final long generation) {
+        final Snapshot cached = snapshot;
+
+        if (cached != null && cached.generation == generation) {
+            return cached;
+        }
+        final Set<String> packages = new HashSet<>();
+        final Set<String> symbolicNames = new HashSet<>();
+        final Map<Long, Map<String, Set<String>>> consumers = new HashMap<>();
+        for (Bundle b : moduleRegistry.context().getBundles()) {
+            final BundleWiring wiring = b.adapt(BundleWiring.class);
+            if (wiring == null || b.getState() == Bundle.UNINSTALLED) {
+                continue;
+            }
+            symbolicNames.add(b.getSymbolicName());
+            for (BundleCapability c : wiring.getCapabilities(PackageNamespace.PACKAGE_NAMESPACE)) {
+                packages.add((String) c.getAttributes().get(PackageNamespace.PACKAGE_NAMESPACE));
+            }
+            for (BundleWire w : wiring.getProvidedWires(PackageNamespace.PACKAGE_NAMESPACE)) {
+                final Bundle requirer = w.getRequirer().getBundle();
+                if (requirer.getBundleId() != b.getBundleId()) {
+                    consumers.computeIfAbsent(b.getBundleId(), id -> new HashMap<>())
+                        .computeIfAbsent((String) w.getCapability().getAttributes().get(PackageNamespace.PACKAGE_NAMESPACE), p -> new LinkedHashSet<>())
+                        .add(requirer.getSymbolicName());
+                }
+            }
+        }
+        final Snapshot ret = new Snapshot(generation, packages, symbolicNames, consumers);
+        snapshot = ret;
+        return ret;
+    }
+
+    private static final class Validation {
+        private final long generation;
+        private final List<String> problems;
+        private final Set<String> missingPackages;
+        private final Set<String> missingBundles;
+        private final Map<String, Set<String>> orphanedPackages;
+
+        private Validation(final long generation, final List<String> problems, final Set<String> missingPackages,
+                           final Set<String> missingBundles, final Map<String, Set<String>> orphanedPackages) {
+            this.generation = generation;
+            this.problems = problems;
+            this.missingPackages = missingPackages;
+            this.missingBundles = missingBundles;
+            this.orphanedPackages = orphanedPackages;
+        }
+    }
+
+    private static final class Snapshot {
+        private final long generation;
+        private final Set<String> packages;
+        private final Set<String> symbolicNames;
+        private final Map<Long, Map<String, Set<String>>> consumers;
+
+        private Snapshot(final long generation, final Set<String> packages, final Set<String> symbolicNames,
+                         final Map<Long, Map<String, Set<String>>> consumers) {
+            this.generation = generation;
+            this.packages = packages;
+            this.symbolicNames = symbolicNames;
+            this.consumers = consumers;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * ContentDigests.java
+ */
+package org.picollo.service.bundle;
+
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SHA-256 of module files, cached by path and kept while the file size and modification time stay the same.
+ * @author rod
+ * @since 2026-10
+ */
+@Component
+public class ContentDigests {
+    private static final int BUFFER_SIZE = 65536;
+    private final Map<Path, Entry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @param path module file.
+     * @return the SHA-256 of the file, in hexadecimal.
+     * @throws IOException when the file cannot be read.
+     */
+    public String sha256(final Path path) throws IOException {
+        final Path key = path.toAbsolutePath().normalize();
+        final BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        final long modified = attributes.lastModifiedTime().toMillis();
+        final Entry cached = cache.get(key);
+
+        if (cached != null && cached.size == attributes.size() && cached.modified == modified) {
+            return cached.sha256;
+        }
+        final MessageDigest digest = Digests.sha256();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(key)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        final String ret = Digests.hex(digest.digest());
+        cache.put(key, new Entry(attributes.size(), modified, ret));
+        return ret;
+    }
+
+    /**
+     * Records the digest of a file computed while it was written, so it is not read again.
+     * @param path module file.
+     * @param sha256 SHA-256 of the file, in hexadecimal.
+     * @throws IOException when the file attributes cannot be read.
+     */
+    public void remember(final Path path, final String sha256) throws IOException {
+        final Path key = path.toAbsolutePath().normalize();
+        final BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+
+        cache.put(key, new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), sha256));
+    }
+
+    /**
+     * Drops the cached digest of a file that has been moved or deleted.
+     * @param path module file.
+     */
+    public void evict(final Path path) {
+        cache.remove(path.toAbsolutePath().normalize());
+    }
+
+    private static final class Entry {
+        private final long size;
+        private final long modified;
+        private final String sha256;
+
+        private Entry(final long size, final long modified, final String sha256) {
+            this.size = size;
+            this.modified = modified;
+            this.sha256 = sha256;
+        }
+    }
+}
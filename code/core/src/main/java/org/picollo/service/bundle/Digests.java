@@ -0,0 +1,37 @@
+/*
+ * Digests.java
+ */
+package org.picollo.service.bundle;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 helpers used to identify module contents.
+ * @author rod
+ * @since 2026-10
+ */
+public final class Digests {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Digests() {
+    }
+
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    public static String hex(final byte[] bytes) {
+        final char[] ret = new char[bytes.length * 2];
+
+        for (int i = 0; i < bytes.length; i++) {
+            ret[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            ret[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(ret);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * ManifestReader.java
+ */
+package org.picollo.service.bundle;
+
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * Reads module manifests. Each jar is opened once, its descriptor is cached by path and kept while the file size and
+ * modification time stay the same.
+ * @author rod
+ * @since 2026-10
+ */
+@Component
+public class ManifestReader {
+    private final Map<Path, Entry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Reads the manifest of a module file.
+     * @param path module file.
+     * @return the module descriptor.
+     * @throws IOException when the file cannot be read or has no manifest.
+     */
+    public BundleDescriptor read(final Path path) throws IOException {
+        final Path key = path.toAbsolutePath().normalize();
+        final BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        final long modified = attributes.lastModifiedTime().toMillis();
+        final Entry cached = cache.get(key);
+
+        if (cached != null && cached.size == attributes.size() && cached.modified == modified) {
+            return cached.descriptor;
+        }
+        try (JarFile jarFile = new JarFile(key.toFile(), false)) {
+            final Manifest manifest = jarFile.getManifest();
+            if (manifest == null) {
+                throw new IOException("Module " + path + " has no manifest.");
+            }
+            final BundleDescriptor descriptor = BundleDescriptor.of(manifest);
+            cache.put(key, new Entry(attributes.size(), modified, descriptor));
+            return descriptor;
+        }
+    }
+
+    /**
+     * Drops the cached descriptor of a file that has been moved or deleted.
+     * @param path module file.
+     */
+    public void evict(final Path path) {
+        cache.remove(path.toAbsolutePath().normalize());
+    }
+
+    private static final class Entry {
+        private final long size;
+        private final long modified;
+        private final BundleDescriptor descriptor;
+
+        private Entry(final long size, final long modified, final BundleDescriptor descriptor) {
+            this.size = size;
+            this.modified = modified;
+            this.descriptor = descriptor;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * ModuleDelta.java
+ */
+package org.picollo.service.bundle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary delta of a module against a base version, so an upgrade only sends what has changed. A delta starts with
+ * the "PMD1" magic, the base and module sizes, followed by operations rebuilding the module in order:
+ * <ul>
+ *     <li>COPY offset length: copies bytes of the base.</li>
+ *     <li>ADD length bytes: adds bytes carried by the delta.</li>
+ *     <li>END: the module is complete.</li>
+ * </ul>
+ * Numbers are unsigned LEB128. Unchanged jar entries keep their compressed bytes, so they are found in the base by
+ * a rolling checksum over {@link #BLOCK} byte blocks wherever they have moved to.
+ * @author rod
+ * @since 2026-10
+ */
+public final class ModuleDelta {
+    public static final int BLOCK = 1024;
+    private static final byte[] MAGIC = {'P', 'M', 'D', '1'};
+    private static final int END = 0;
+    private static final int COPY = 1;
+    private static final int ADD = 2;
+
+    private ModuleDelta() {
+    }
+
+    /**
+     * Rebuilds a module from its base and a delta. The module is produced while it is read, the caller checks its
+     * digest.
+     * @param base base module file.
+     * @param delta delta against the base.
+     * @return the module content.
+     * @throws IOException when the delta is invalid or has been made against another base.
+     */
+    public static InputStream apply(final Path base, final InputStream delta) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(delta));
+        final byte[] magic = new byte[MAGIC.length];
+
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Invalid module delta.");
+        }
+        final long baseSize = readLong(in);
+        final long size = readLong(in);
+        final FileChannel channel = FileChannel.open(base, StandardOpenOption.READ);
+        if (channel.size() != baseSize) {
+            channel.close();
+            throw new IOException("Module delta has been made against another base, " + baseSize + " bytes instead of " + channel.size() + ".");
+        }
+        return new Patched(channel, in, size);
+    }
+
+    /**
+     * Writes the delta of a module against a base. Both files are read in memory.
+     * @param base base module file.
+     * @param target new module file.
+     * @param out delta output, left open.
+     * @throws IOException when a file cannot be read or the delta cannot be written.
+     */
+    public static void diff(final Path base, final Path target, final OutputStream out) throws IOException {
+        final byte[] source = Files.readAllBytes(base);
+        final byte[] data = Files.readAllBytes(target);
+        final Map<Integer, List<Integer>> blocks = new HashMap<>();
+        final Writer writer = new Writer(new BufferedOutputStream(out), data);
+
+        for (int i = 0; i + BLOCK <= source.length; i += BLOCK) {
+            blocks.computeIfAbsent(checksum(source, i), k -> new ArrayList<>(1)).add(i);
+        }
+        writer.out.write(MAGIC);
+        writeLong(writer.out, source.length);
+        writeLong(writer.out, data.length);
+
+        int literal = 0;
+        int i = 0;
+        int a = 0;
+        int b = 0;
+        boolean rolling = false;
+        while (i + BLOCK <= data.length) {
+            if (!rolling) {
+                a = 0;
+                b = 0;
+                for (int k = 0; k < BLOCK; k++) {
+                    a += data[i + k] & 0xff;
+                    b += (BLOCK - k) * (data[i + k] & 0xff);
+                }
+                a &= 0xffff;
+                b &= 0xffff;
+                rolling = true;
+            }
+            final int match = find(source, data, i, blocks.getOrDefault((b << 16) | a, Collections.emptyList()));
+            if (match >= 0) {
+                int start = i;
+                int from = match;
+                while (start > literal && from > 0 && data[start - 1] == source[from - 1]) {
+                    start--;
+                    from--;
+                }
+                int end = i + BLOCK;
+                int to = match + BLOCK;
+                while (end < data.length && to < source.length && data[end] == source[to]) {
+                    end++;
+                    to++;
+                }
+                writer.add(literal, start);
+                writer.copy(from, end - start);
+                i = end;
+                literal = end;
+                rolling = false;
+            } else {
+                if (i + BLOCK < data.length) {
+                    final int removed = data[i] & 0xff;
+                    a = (a - removed + (data[i + BLOCK] & 0xff)) & 0xffff;
+                    b = (b - BLOCK * removed + a) & 0xffff;
+                }
+                i++;
+            }
+        }
+        writer.add(literal, data.length);
+        writer.end();
+    }
+
+    private static int checksum(final byte[] bytes, final int offset) {
+        int a = 0;
+        int b = 0;
+
+        for (int k = 0; k < BLOCK; k++) {
+            a += bytes[offset + k] & 0xff;
+            b += (BLOCK - k) * (bytes[offset + k] & 0xff);
+        }
+        return ((b & 0xffff) << 16) | (a & 0xffff);
+    }
+
+    /**
+     * @return the offset of the base block equal to the target block at the given offset, or -1.
+     */
+    private static int find(final byte[] source, final byte[] data, final int offset, final List<Integer> candidates) {
+        for (int c : candidates) {
+            if (sameBlock(source, c, data, offset)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean sameBlock(final byte[] source, final int from, final byte[] data, final int offset) {
+        for (int k = 0; k < BLOCK; k++) {
+            if (source[from + k] != data[offset + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeLong(final OutputStream out, final long value) throws IOException {
+        long v = value;
+
+        while ((v & ~0x7fL) != 0) {
+            out.write((int) ((v & 0x7f) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long readLong(final InputStream in) throws IOException {
+        long ret = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated module delta.");
+            }
+            ret |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return ret;
+            }
+        }
+        throw new IOException("Invalid number in module delta.");
+    }
+
+    /**
+     * Writes the operations of a delta, merging copies of consecutive base ranges.
+     */
+    private static final class Writer {
+        private final OutputStream out;
+        private final byte[] data;
+        private long copyOffset = -1;
+        private long copyLength;
+
+        private Writer(final OutputStream out, final byte[] data) {
+            this.out = out;
+            this.data = data;
+        }
+
+        private void add(final int from, final int to) throws IOException {
+            if (to > from) {
+                flushCopy();
+                out.write(ADD);
+                writeLong(out, to - from);
+                out.write(data, from, to - from);
+            }
+        }
+
+        private void copy(final long offset, final long length) throws IOException {
+            if (copyOffset >= 0 && copyOffset + copyLength == offset) {
+                copyLength += length;
+            } else {
+                flushCopy();
+                copyOffset = offset;
+                copyLength = length;
+            }
+        }
+
+        private void end() throws IOException {
+            flushCopy();
+            out.write(END);
+            out.flush();
+        }
+
+        private void flushCopy() throws IOException {
+            if (copyOffset >= 0) {
+                out.write(COPY);
+                writeLong(out, copyOffset);
+                writeLong(out, copyLength);
+                copyOffset = -1;
+            }
+        }
+    }
+
+    /**
+     * Module content rebuilt from its base and delta while it is read.
+     */
+    private static final class Patched extends InputStream {
+        private final FileChannel base;
+        private final DataInputStream delta;
+        private final long size;
+        private int operation;
+        private long offset;
+        private long remaining;
+        private long produced;
+        private boolean ended;
+
+        private Patched(final FileChannel base, final DataInputStream delta, final long size) {
+            this.base = base;
+            this.delta = delta;
+            this.size = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (remaining == 0) {
+                if (ended) {
+                    return -1;
+                }
+                next();
+            }
+            final int length = (int) Math.min(len, remaining);
+            final int ret = operation == COPY ? base.read(ByteBuffer.wrap(b, off, length), offset) : delta.read(b, off, length);
+            if (ret <= 0) {
+                throw new EOFException("Truncated module delta.");
+            }
+            offset += ret;
+            remaining -= ret;
+            produced += ret;
+            return ret;
+        }
+
+        private void next() throws IOException {
+            operation = delta.read();
+            if (operation == END) {
+                ended = true;
+                if (produced != size) {
+                    throw new IOException("Module delta has produced " + produced + " bytes instead of " + size + ".");
+                }
+                return;
+            } else if (operation == COPY) {
+                offset = readLong(delta);
+                remaining = readLong(delta);
+                if (offset < 0 || remaining < 0 || offset + remaining > base.size()) {
+                    throw new IOException("Module delta copies beyond its base.");
+                }
+            } else if (operation == ADD) {
+                remaining = readLong(delta);
+            } else {
+                throw new IOException(operation < 0 ? "Truncated module delta." : "Invalid module delta operation " + operation + ".");
+            }
+            if (remaining < 0 || produced + remaining > size) {
+                throw new IOException("Module delta produces more than " + size + " bytes.");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            base.close();
+        }
+    }
+}
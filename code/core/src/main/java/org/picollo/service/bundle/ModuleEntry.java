@@ -0,0 +1,49 @@
+/*
+ * ModuleEntry.java
+ */
+package org.picollo.service.bundle;
+
+import lombok.Getter;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+
+import java.util.Dictionary;
+
+/**
+ * Snapshot of an installed bundle kept by the {@link ModuleRegistry}, with the headers the REST and deployment paths
+ * need already extracted.
+ * @author rod
+ * @since 2026-10
+ */
+@Getter
+public final class ModuleEntry {
+    private final Bundle bundle;
+    private final long bundleId;
+    private final String symbolicName;
+    private final String bundleName;
+    private final String version;
+    private final String driverType;
+    private final String location;
+    private final int state;
+
+    private ModuleEntry(final Bundle bundle) {
+        final Dictionary<String, String> headers = bundle.getHeaders();
+
+        this.bundle = bundle;
+        this.bundleId = bundle.getBundleId();
+        this.symbolicName = bundle.getSymbolicName();
+        this.bundleName = headers.get(Constants.BUNDLE_NAME);
+        this.version = bundle.getVersion().toString();
+        this.driverType = headers.get(BundleDescriptor.DRIVER_TYPE);
+        this.location = bundle.getLocation();
+        this.state = bundle.getState();
+    }
+
+    static ModuleEntry of(final Bundle bundle) {
+        return new ModuleEntry(bundle);
+    }
+
+    public boolean isActiveOrResolved() {
+        return state == Bundle.ACTIVE || state == Bundle.RESOLVED;
+    }
+}
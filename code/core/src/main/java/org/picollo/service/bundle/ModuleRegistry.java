@@ -0,0 +1,164 @@
+/*
+ * ModuleRegistry.java
+ */
+package org.picollo.service.bundle;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.SynchronousBundleListener;
+import org.osgi.framework.wiring.FrameworkWiring;
+import org.picollo.config.service.OSGiConfig;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Index of the installed modules, kept up to date by a bundle listener on the OSGi framework so lookups by
+ * symbolic name or Bundle-Name do not need to scan every installed bundle.
+ * @author rod
+ * @since 2026-10
+ */
+@Component
+public class ModuleRegistry implements SynchronousBundleListener {
+    private final ConcurrentNavigableMap<Long, ModuleEntry> byId = new ConcurrentSkipListMap<>();
+    private final Map<String, ModuleEntry> bySymbolicName = new ConcurrentHashMap<>();
+    private final Map<String, ModuleEntry> byBundleName = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile BundleContext context;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void attach() {
+        context();
+    }
+
+    /**
+     * Finds a module by its symbolic name, ignoring case.
+     * @param symbolicName module symbolic name.
+     * @return the module entry when installed.
+     */
+    public Optional<ModuleEntry> find(final String symbolicName) {
+        context();
+        return symbolicName == null ? Optional.empty() : Optional.ofNullable(bySymbolicName.get(key(symbolicName)));
+    }
+
+    /**
+     * Finds a module by its Bundle-Name header.
+     * @param bundleName module Bundle-Name.
+     * @return the module entry when installed.
+     */
+    public Optional<ModuleEntry> findByBundleName(final String bundleName) {
+        context();
+        return bundleName == null ? Optional.empty() : Optional.ofNullable(byBundleName.get(bundleName));
+    }
+
+    /**
+     * @return every installed module ordered by bundle id.
+     */
+    public Collection<ModuleEntry> modules() {
+        context();
+        return Collections.unmodifiableCollection(byId.values());
+    }
+
+    /**
+     * @param state bundle state.
+     * @return the number of installed modules in the given state.
+     */
+    public long count(final int state) {
+        return byId.values().stream().filter(e -> e.getState() == state).count();
+    }
+
+    /**
+     * @return a counter bumped on every bundle event, unchanged while the installed modules stay the same.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    @Override
+    public void bundleChanged(final BundleEvent event) {
+        update(event.getBundle());
+        generation.incrementAndGet();
+    }
+
+    /**
+     * @return the framework wiring, used to resolve and refresh bundles.
+     */
+    public FrameworkWiring wiring() {
+        return context().getBundle(0).adapt(FrameworkWiring.class);
+    }
+
+    /**
+     * @return the framework bundle context.
+     */
+    public BundleContext context() {
+        BundleContext ret = context;
+
+        if (ret == null) {
+            synchronized (this) {
+                if (context == null) {
+                    final BundleContext bundleContext = OSGiConfig.osgi.getBundleContext();
+                    bundleContext.addBundleListener(this);
+                    for (Bundle b : bundleContext.getBundles()) {
+                        update(b);
+                    }
+                    context = bundleContext;
+                }
+                ret = context;
+            }
+        }
+        return ret;
+    }
+
+    private void update(final Bundle bundle) {
+        if (bundle.getState() == Bundle.UNINSTALLED) {
+            remove(bundle.getBundleId());
+        } else {
+            final ModuleEntry entry = ModuleEntry.of(bundle);
+            byId.put(entry.getBundleId(), entry);
+            if (entry.getSymbolicName() != null) {
+                bySymbolicName.put(key(entry.getSymbolicName()), entry);
+            }
+            if (entry.getBundleName() != null) {
+                byBundleName.put(entry.getBundleName(), entry);
+            }
+        }
+    }
+
+    private void remove(final long bundleId) {
+        final ModuleEntry entry = byId.remove(bundleId);
+
+        if (entry != null) {
+            if (entry.getSymbolicName() != null) {
+                bySymbolicName.computeIfPresent(key(entry.getSymbolicName()),
+                    (k, v) -> v.getBundleId() == bundleId ? replacement(e -> e.getSymbolicName() != null && k.equals(key(e.getSymbolicName()))) : v);
+            }
+            if (entry.getBundleName() != null) {
+                byBundleName.computeIfPresent(entry.getBundleName(),
+                    (k, v) -> v.getBundleId() == bundleId ? replacement(e -> k.equals(e.getBundleName())) : v);
+            }
+        }
+    }
+
+    private ModuleEntry replacement(final Predicate<ModuleEntry> sameModule) {
+        return byId.values().stream()
+            .filter(sameModule)
+            .reduce((first, second) -> second)
+            .orElse(null);
+    }
+
+    private static String key(final String symbolicName) {
+        return symbolicName.toLowerCase(Locale.ROOT);
+    }
+}
@@ -3,40 +3,67 @@
  */
 package org.picollo.service.rest;
 
+import io.micrometer.core.instrument.Timer;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
-import org.picollo.config.service.OSGiConfig;
 import org.osgi.framework.Bundle;
 import org.picollo.resource.exception.BadRequestException;
 import org.picollo.resource.exception.ItemNotFoundException;
+import org.picollo.service.DeploymentJob;
+import org.picollo.service.DeploymentJobs;
+import org.picollo.service.DeploymentMetrics;
+import org.picollo.service.ModuleReplicator;
+import org.picollo.service.ModuleReplicator.Advertisement;
+import org.picollo.service.StagingArea;
+import org.picollo.service.StagingArea.StagedFile;
+import org.picollo.service.bundle.BundleDescriptor;
+import org.picollo.service.bundle.BundleLocations;
+import org.picollo.service.bundle.BundleStore;
+import org.picollo.service.bundle.ContentDigests;
+import org.picollo.service.bundle.ManifestReader;
+import org.picollo.service.bundle.ModuleDelta;
+import org.picollo.service.bundle.ModuleEntry;
+import org.picollo.service.bundle.ModuleRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.io.InputStream;
 import java.nio.file.*;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
-import static java.util.Arrays.asList;
-
 /**
  * This class provides REST interface to deploy new modules into the service.
  *
@@ -49,6 +76,28 @@ public class DeployProcessor {
    @Value("${application.deployment-directory}")
    private String deployDirectory;
    private static final String APPLICATION_DEPLOYMENT_DIRECTORY = "APPLICATION_DEPLOYMENT-DIRECTORY";
+   private static final String SHA256_HEADER = "X-Checksum-SHA256";
+   @Autowired
+   private ModuleRegistry moduleRegistry;
+   @Autowired
+   private StagingArea stagingArea;
+   @Autowired
+   private ContentDigests contentDigests;
+   @Autowired
+   private DeploymentMetrics deploymentMetrics;
+   @Autowired
+   private DeploymentJobs deploymentJobs;
+   @Autowired
+   private ModuleReplicator moduleReplicator;
+   @Autowired
+   private ManifestReader manifestReader;
+   @Autowired
+   private BundleStore bundleStore;
+   @Autowired
+   @Qualifier("deploymentExecutor")
+   private ExecutorService executor;
+   @Value("${application.deployer.job-stream-timeout:1800000}")
+   private long streamTimeout;
 
    @PostConstruct
    public void init() {
@@ -58,58 +107,207 @@ public class DeployProcessor {
    }
 
    @PostMapping("/modules/deploy")
-   public UploadFileResponse uploadFile(@RequestParam("file") final MultipartFile file) {
-      UploadFileResponse ret;
+   public UploadFileResponse uploadFile(@RequestParam("file") final MultipartFile file,
+                                        @RequestParam(value = "sha256", required = false) final String sha256,
+                                        @RequestParam(value = "priority", defaultValue = "0") final int priority) {
       log.info("Deploying a new module named {}...", file.getName());
-      try {
-         String fileName = storeFile(file);
-         String fileDownloadUri = ServletUriComponentsBuilder.fromCurrentContextPath()
-            .path(deployDirectory.substring(1))
-            .path(fileName + File.separator)
-            .toUriString();
-         ret = new UploadFileResponse(fileName, fileDownloadUri, file.getContentType(), file.getSize());
-         log.info("Module {} has been deployed successfully.", fileName);
-      } catch (FileSystemException e) {
+      try (InputStream in = file.getInputStream()) {
+         return deploy(file.getOriginalFilename(), in, file.getContentType(), sha256, priority);
+      } catch (IOException e) {
          log.error("Error creating file named {}.", file.getName());
          throw new BadRequestException(String.format("Error creating file named %s.", file.getName()), e);
       }
-      return ret;
    }
 
+   /**
+    * Deploys a module sent as the raw request body, streaming it to the staging area without multipart buffering.
+    */
+   @PutMapping(value = "/modules/deploy/{fileName:.+}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+   public UploadFileResponse uploadStream(@PathVariable final String fileName,
+                                          @RequestHeader(value = SHA256_HEADER, required = false) final String sha256,
+                                          @RequestParam(value = "priority", defaultValue = "0") final int priority,
+                                          final HttpServletRequest request) {
+      log.info("Deploying a new module named {}...", fileName);
+      try (InputStream in = request.getInputStream()) {
+         return deploy(fileName, in, request.getContentType(), sha256, priority);
+      } catch (IOException e) {
+         log.error("Error creating file named {}.", fileName);
+         throw new BadRequestException(String.format("Error creating file named %s.", fileName), e);
+      }
+   }
+
+   /**
+    * Deploys a module sent as a binary delta, see {@link ModuleDelta}, against an installed module. The base is
+    * given by its SHA-256 or version, a SHA-256 may also name a content kept in the bundle store. The rebuilt module
+    * must match the X-Checksum-SHA256 header, it is then deployed like a full upload.
+    */
+   @PutMapping(value = "/modules/deploy/{fileName:.+}/delta", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+   public UploadFileResponse uploadDelta(@PathVariable final String fileName,
+                                         @RequestParam("module") final String moduleName,
+                                         @RequestParam("base") final String base,
+                                         @RequestHeader(SHA256_HEADER) final String sha256,
+                                         @RequestParam(value = "priority", defaultValue = "0") final int priority,
+                                         final HttpServletRequest request) {
+      log.info("Deploying a new module named {} as a delta against {} {}...", fileName, moduleName, base);
+      try (InputStream in = ModuleDelta.apply(baseFile(moduleName, base), request.getInputStream())) {
+         return deploy(fileName, in, MediaType.APPLICATION_OCTET_STREAM_VALUE, sha256, priority);
+      } catch (FileNotFoundException e) {
+         throw new ItemNotFoundException(String.format("Module %s not found.", moduleName), e);
+      } catch (IOException e) {
+         log.error("Error creating file named {} from a delta, message = {}", fileName, e.getMessage());
+         throw new BadRequestException(String.format("Error creating file named %s from a delta: %s", fileName, e.getMessage()), e);
+      }
+   }
+
+   /**
+    * @return the content a delta has been made against.
+    */
+   private Path baseFile(final String moduleName, final String base) throws IOException {
+      if (base.matches("[0-9a-fA-F]{64}")) {
+         final Optional<Path> stored = bundleStore.blob(base.toLowerCase(Locale.ROOT));
+         if (stored.isPresent()) {
+            return stored.get();
+         }
+      }
+      final Path file = loadFileAsResource(moduleName).getFile().toPath();
+      final String version = moduleRegistry.find(moduleName).map(m -> m.getBundle().getVersion().toString()).orElse(null);
+      if (!base.equals(version) && !base.equalsIgnoreCase(contentDigests.sha256(file))) {
+         throw new BadRequestException(String.format("Module %s is at version %s, the delta has been made against %s.", moduleName, version, base));
+      }
+      return file;
+   }
+
+   /**
+    * Deploys several modules. With atomic set, the modules are staged concurrently, checked as a whole and deployed
+    * as one release, every module is switched over or none is.
+    */
    @PostMapping("/modules/deploy/multiple")
-   public List<UploadFileResponse> uploadMultipleFiles(@RequestParam("files") MultipartFile[] files) {
+   public List<UploadFileResponse> uploadMultipleFiles(@RequestParam("files") MultipartFile[] files,
+                                                       @RequestParam(value = "priority", defaultValue = "0") final int priority,
+                                                       @RequestParam(value = "atomic", defaultValue = "false") final boolean atomic) {
+      if (atomic) {
+         return deployRelease(files, priority);
+      }
       return Arrays.stream(files)
-         .map(this::uploadFile)
+         .map(file -> uploadFile(file, null, priority))
          .collect(Collectors.toList());
    }
 
-   @GetMapping("modules/download/{moduleName}")
-   public ResponseEntity<Resource> downloadFile(@PathVariable final String moduleName, final HttpServletRequest request) {
-      // Load file as Resource
-      Resource resource;
-      ResponseEntity<Resource> ret = null;
+   /**
+    * Status of a deployment job, with the phases the module has gone through.
+    */
+   @GetMapping("/modules/deploy/jobs/{id}")
+   public DeploymentJob job(@PathVariable final String id) {
+      return deploymentJobs.find(id)
+         .orElseThrow(() -> new ItemNotFoundException(String.format("Deployment job %s not found.", id)));
+   }
+
+   /**
+    * Streams the changes of a deployment job as Server-Sent Events, the stream ends when the job has finished.
+    */
+   @GetMapping(value = "/modules/deploy/jobs/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+   public SseEmitter jobEvents(@PathVariable final String id) {
+      final DeploymentJob job = job(id);
+      final SseEmitter ret = stream(j -> j == job, true);
 
+      send(ret, job, true);
+      return ret;
+   }
+
+   /**
+    * Streams the changes of every deployment job as Server-Sent Events.
+    */
+   @GetMapping(value = "/modules/deploy/jobs/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+   public SseEmitter jobEvents() {
+      return stream(j -> true, false);
+   }
+
+   private SseEmitter stream(final Predicate<DeploymentJob> filter, final boolean completeOnFinish) {
+      final SseEmitter ret = new SseEmitter(streamTimeout);
+      final Consumer<DeploymentJob> listener = j -> {
+         if (filter.test(j)) {
+            send(ret, j, completeOnFinish);
+         }
+      };
+
+      ret.onCompletion(() -> deploymentJobs.removeListener(listener));
+      ret.onTimeout(() -> deploymentJobs.removeListener(listener));
+      ret.onError(e -> deploymentJobs.removeListener(listener));
+      deploymentJobs.addListener(listener);
+      return ret;
+   }
+
+   private static void send(final SseEmitter emitter, final DeploymentJob job, final boolean completeOnFinish) {
       try {
-         resource = loadFileAsResource(moduleName);
-         // Try to determine file's content type
-         String contentType = null;
-         try {
-            contentType = request.getServletContext().getMimeType(resource.getFile().getAbsolutePath());
-         } catch (IOException ex) {
-            log.error("Could not determine file type.");
+         emitter.send(SseEmitter.event()
+            .id(job.getId())
+            .name(job.getStatus().name().toLowerCase(Locale.ROOT))
+            .data(job, MediaType.APPLICATION_JSON));
+         if (completeOnFinish && job.getStatus().isFinished()) {
+            emitter.complete();
          }
+      } catch (IOException | IllegalStateException e) {
+         emitter.completeWithError(e);
+      }
+   }
+
+   /**
+    * Downloads an installed module. The module content hash is sent as a strong ETag and its install time as
+    * Last-Modified, so unchanged modules are answered with 304, and single byte ranges are honoured.
+    */
+   @GetMapping("modules/download/{moduleName}")
+   public void downloadFile(@PathVariable final String moduleName, final HttpServletRequest request,
+                            final HttpServletResponse response) {
+      try {
+         final Resource resource = loadFileAsResource(moduleName);
+         final Path file = resource.getFile().toPath();
+         final long lastModified = moduleRegistry.find(moduleName).map(m -> m.getBundle().getLastModified()).orElse(0L);
+         // Try to determine file's content type
+         String contentType = request.getServletContext().getMimeType(file.toAbsolutePath().toString());
          // Fallback to the default content type if type could not be determined
          if (contentType == null) {
-            contentType = "application/octet-stream";
+            contentType = MediaType.APPLICATION_OCTET_STREAM_VALUE;
          }
-         ret = ResponseEntity.ok()
-            .contentType(MediaType.parseMediaType(contentType))
-            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; module=\"" + moduleName + "\"")
-            .body(resource);
+         response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; module=\"" + moduleName + "\"");
+         FileResponses.send(file, contentDigests.sha256(file), lastModified, contentType, request, response);
       } catch (FileNotFoundException e) {
          throw new ItemNotFoundException(String.format("Module %s not found.", moduleName), e);
+      } catch (IOException e) {
+         log.error("Error sending module {}, message = {}", moduleName, e.getMessage());
+         throw new BadRequestException(String.format("Error sending module %s.", moduleName), e);
+      }
+   }
+
+   /**
+    * Accepts a module advertised by another node, which is pulled and deployed in the background.
+    */
+   @PostMapping("/modules/replicate")
+   @ResponseStatus(HttpStatus.ACCEPTED)
+   public void replicate(@RequestBody final Advertisement advertisement) {
+      log.info("Module {} advertised, sha256 = {}, sources = {}", advertisement.getFileName(), advertisement.getSha256(), advertisement.getSources());
+      try {
+         moduleReplicator.accept(advertisement);
+      } catch (IllegalArgumentException e) {
+         throw new BadRequestException(e.getMessage(), e);
+      }
+   }
+
+   /**
+    * Sends a stored module content to another node, by its SHA-256. Single byte ranges are honoured, so nodes can
+    * pull a module in chunks from several others.
+    */
+   @GetMapping("/modules/blobs/{sha256}")
+   public void blob(@PathVariable final String sha256, final HttpServletRequest request,
+                    final HttpServletResponse response) {
+      final Path blob = moduleReplicator.blob(sha256)
+         .orElseThrow(() -> new ItemNotFoundException(String.format("Module content %s not found.", sha256)));
+      try {
+         FileResponses.send(blob, sha256.toLowerCase(Locale.ROOT), Files.getLastModifiedTime(blob).toMillis(),
+            MediaType.APPLICATION_OCTET_STREAM_VALUE, request, response);
+      } catch (IOException e) {
+         log.error("Error sending module content {}, message = {}", sha256, e.getMessage());
+         throw new BadRequestException(String.format("Error sending module content %s.", sha256), e);
       }
-      return ret;
    }
 
    @Getter
@@ -120,6 +318,8 @@ public class DeployProcessor {
       private String fileDownloadUri;
       private String fileType;
       private long size;
+      private String sha256;
+      private String jobId;
 
       @Override
       public String toString() {
@@ -127,52 +327,141 @@ public class DeployProcessor {
             "\"fileName\":\"" + fileName + '\"' +
             ",\"fileDownloadUri\":\"" + fileDownloadUri + '\"' +
             ",\"fileType\":\"" + fileType + '\"' +
-            ",\"size\":\"" + size +
+            ",\"size\":" + size +
+            ",\"sha256\":\"" + sha256 + '\"' +
+            ",\"jobId\":\"" + jobId + '\"' +
             '}';
       }
    }
 
-   private String storeFile(MultipartFile file) throws FileSystemException {
+   private UploadFileResponse deploy(final String originalFileName, final InputStream in, final String contentType,
+                                     final String sha256, final int priority) throws IOException {
+      final Timer.Sample sample = deploymentMetrics.start();
       // Normalize file name
-      String fileName = StringUtils.cleanPath(file.getOriginalFilename());
-      String fileDestination = deployDirectory + File.separator + fileName;
+      final String fileName = StringUtils.cleanPath(originalFileName);
+      long size = 0;
+      String outcome = "failure";
 
       try {
          // Check if the file's name contains invalid characters
-         if (fileName.contains("..")) {
+         if (fileName.contains("..") || fileName.contains("/")) {
             throw new FileSystemException("Sorry! Filename contains invalid path sequence " + fileName);
          }
-
-         // Copy file to the target location (Replacing existing file with the same name)
-         Files.copy(file.getInputStream(), Paths.get(fileDestination), StandardCopyOption.REPLACE_EXISTING);
-
-         return fileName;
-      } catch (IOException ex) {
-         throw new FileSystemException("Could not store file " + fileName + ". Please try again!");
+         final StagedFile staged = stagingArea.stage(fileName, in);
+         size = staged.getSize();
+         if (!staged.matches(sha256)) {
+            stagingArea.discard(staged);
+            throw new BadRequestException(String.format("Module %s has digest %s, expected %s.", fileName, staged.getSha256(), sha256));
+         }
+         moduleReplicator.replicate(staged, priority);
+         final DeploymentJob job = deploymentJobs.submit(fileName, stagingArea.publish(staged), priority);
+         final String fileDownloadUri = downloadUri(fileName);
+         log.info("Module {} has been deployed successfully, sha256 = {}, job = {}.", fileName, staged.getSha256(), job.getId());
+         outcome = "success";
+         return new UploadFileResponse(fileName, fileDownloadUri, contentType, staged.getSize(), staged.getSha256(),
+            job.getId());
+      } finally {
+         deploymentMetrics.uploaded(sample, size, outcome);
       }
    }
 
-   private Resource loadFileAsResource(String moduleName) throws FileNotFoundException {
+   private List<UploadFileResponse> deployRelease(final MultipartFile[] files, final int priority) {
+      final Timer.Sample sample = deploymentMetrics.start();
+      final List<Future<StagedFile>> futures = new ArrayList<>();
+      final List<StagedFile> staged = new ArrayList<>();
+      final Map<String, MultipartFile> fileNames = new LinkedHashMap<>();
+      String outcome = "failure";
+
+      log.info("Deploying a release of {} modules...", files.length);
+      for (MultipartFile file : files) {
+         final String fileName = StringUtils.cleanPath(file.getOriginalFilename());
+         if (fileName.contains("..") || fileName.contains("/")) {
+            throw new BadRequestException("Sorry! Filename contains invalid path sequence " + fileName);
+         }
+         if (fileNames.put(fileName, file) != null) {
+            throw new BadRequestException(String.format("Module %s is sent twice in the release.", fileName));
+         }
+      }
       try {
-         Optional<Bundle> bundle = asList(OSGiConfig.osgi.getBundleContext().getBundles())
-            .stream()
-            .filter(b -> b.getSymbolicName().equalsIgnoreCase(moduleName))
-            .findAny();
-         if (bundle.isPresent()) {
-            Bundle b = bundle.get();
-            Path filePath = Paths.get(b.getLocation().substring(7)).toAbsolutePath().normalize();
-            Resource resource = new UrlResource(filePath.toUri());
-            if (resource.exists()) {
-               return resource;
-            } else {
-               throw new FileNotFoundException("Module not found " + moduleName);
+         fileNames.forEach((fileName, file) -> futures.add(executor.submit(() -> {
+            try (InputStream in = file.getInputStream()) {
+               return stagingArea.stage(fileName, in);
             }
+         })));
+         IOException failure = null;
+         for (Future<StagedFile> future : futures) {
+            try {
+               staged.add(future.get());
+            } catch (ExecutionException e) {
+               failure = new IOException(e.getCause().getMessage(), e.getCause());
+            }
+         }
+         if (failure != null) {
+            throw failure;
+         }
+         check(staged);
+         final Map<String, Path> published = stagingArea.publishRelease(staged);
+         staged.clear();
+         final List<DeploymentJob> jobs = deploymentJobs.submitRelease(published, priority);
+         final List<UploadFileResponse> ret = new ArrayList<>();
+         for (DeploymentJob job : jobs) {
+            final Path file = published.get(job.getFileName());
+            ret.add(new UploadFileResponse(job.getFileName(), downloadUri(job.getFileName()), MediaType.APPLICATION_OCTET_STREAM_VALUE,
+               Files.size(file), contentDigests.sha256(file), job.getId()));
+         }
+         log.info("Release {} has been queued, modules = {}.", jobs.isEmpty() ? null : jobs.get(0).getRelease(), published.keySet());
+         outcome = "success";
+         return ret;
+      } catch (IOException e) {
+         log.error("Error staging release, message = {}", e.getMessage());
+         throw new BadRequestException(String.format("Error staging release: %s", e.getMessage()), e);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new BadRequestException("Release upload interrupted.", e);
+      } finally {
+         futures.forEach(f -> f.cancel(true));
+         staged.forEach(stagingArea::discard);
+         deploymentMetrics.uploaded(sample, Arrays.stream(files).mapToLong(MultipartFile::getSize).sum(), outcome);
+      }
+   }
 
+   /**
+    * Checks the modules of a release as a whole before any of them is queued: each one must have a manifest and a
+    * module must not be sent twice.
+    */
+   private void check(final List<StagedFile> staged) throws IOException {
+      final Map<String, String> modules = new HashMap<>();
+
+      for (StagedFile s : staged) {
+         final BundleDescriptor descriptor = manifestReader.read(s.getFile());
+         final String other = modules.put(String.valueOf(descriptor.getSymbolicName()).toLowerCase(Locale.ROOT), s.getFileName());
+         manifestReader.evict(s.getFile());
+         if (other != null) {
+            throw new BadRequestException(String.format("Modules %s and %s are both %s.", other, s.getFileName(), descriptor.getSymbolicName()));
+         }
+      }
+   }
+
+   private String downloadUri(final String fileName) {
+      return ServletUriComponentsBuilder.fromCurrentContextPath()
+         .path(deployDirectory.substring(1))
+         .path(fileName + File.separator)
+         .toUriString();
+   }
+
+   private Resource loadFileAsResource(String moduleName) throws FileNotFoundException {
+      Optional<Bundle> bundle = moduleRegistry.find(moduleName).map(ModuleEntry::getBundle);
+      if (bundle.isPresent()) {
+         Bundle b = bundle.get();
+         Path filePath = BundleLocations.toPath(b.getLocation()).toAbsolutePath().normalize();
+         Resource resource = new FileSystemResource(filePath);
+         if (resource.exists()) {
+            return resource;
          } else {
             throw new FileNotFoundException("Module not found " + moduleName);
          }
-      } catch (MalformedURLException ex) {
+      } else {
          throw new FileNotFoundException("Module not found " + moduleName);
       }
    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,50 @@
+/*
+ * DriversProcessor.java
+ */
+package org.picollo.service.rest;
+
+import org.picollo.resource.exception.ItemNotFoundException;
+import org.picollo.service.DriverStatistics;
+import org.picollo.service.DriverStatistics.Driver;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Runtime statistics of the module drivers: state, runs, in-flight executions, time spent RUNNING, state
+ * transitions and run durations, see {@link DriverStatistics}. The list is empty while the statistics are disabled.
+ *
+ * @author rod
+ * @since 2026-10
+ */
+@Component
+@Endpoint(id = "drivers")
+public class DriversProcessor {
+   @Autowired
+   private DriverStatistics driverStatistics;
+
+   /**
+    * Lists every driver seen since the application started, the busiest first.
+    */
+   @ReadOperation
+   public List<Driver> drivers() {
+      return driverStatistics.drivers().values().stream()
+         .sorted(Comparator.comparingLong(Driver::getRunningMillis).reversed().thenComparing(Driver::getName))
+         .collect(Collectors.toList());
+   }
+
+   @ReadOperation
+   public Driver driver(@Selector final String name) {
+      if (!driverStatistics.isEnabled()) {
+         throw new ItemNotFoundException("Driver statistics are disabled, see application.drivers.enabled.");
+      }
+      return driverStatistics.find(name)
+         .orElseThrow(() -> new ItemNotFoundException(String.format("Driver %s not found.", name)));
+   }
+}
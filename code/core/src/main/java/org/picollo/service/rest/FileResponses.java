@@ -0,0 +1,97 @@
+/*
+ * FileResponses.java
+ */
+package org.picollo.service.rest;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Writes files to HTTP responses with conditional request and single byte range support. The content is handed to
+ * the connector's sendfile when available, otherwise it is transferred from the file channel.
+ * @author rod
+ * @since 2026-10
+ */
+final class FileResponses {
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private FileResponses() {
+    }
+
+    /**
+     * Sends a file.
+     * @param file file to send.
+     * @param etag strong entity tag of the file content, without quotes.
+     * @param lastModified last modification time of the file content in milliseconds, or 0 when unknown.
+     * @param contentType content type of the file.
+     * @param request HTTP request.
+     * @param response HTTP response.
+     * @throws IOException when the file cannot be sent.
+     */
+    static void send(final Path file, final String etag, final long lastModified, final String contentType,
+                     final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        final String quotedEtag = "\"" + etag + "\"";
+        final long length = Files.size(file);
+        long start = 0;
+        long end = length;
+
+        if (new ServletWebRequest(request, response).checkNotModified(quotedEtag, lastModified)) {
+            return;
+        }
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        final String range = request.getHeader(HttpHeaders.RANGE);
+        final String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(quotedEtag))) {
+            final List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            // Multiple ranges are answered with the whole file
+            if (ranges.size() == 1) {
+                start = ranges.get(0).getRangeStart(length);
+                end = ranges.get(0).getRangeEnd(length) + 1;
+                if (start >= length) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + length);
+            }
+        }
+        response.setContentType(contentType);
+        response.setContentLengthLong(end - start);
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+        } else {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                final WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+                long position = start;
+                while (position < end) {
+                    position += channel.transferTo(position, end - position, out);
+                }
+            }
+        }
+    }
+}
@@ -5,25 +5,30 @@ package org.picollo.service.rest;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleException;
-import org.picollo.config.service.OSGiConfig;
 import org.picollo.resource.exception.BadRequestException;
 import org.picollo.resource.exception.ItemNotFoundException;
+import org.picollo.service.DeploymentJournal;
+import org.picollo.service.ModuleOperations;
+import org.picollo.service.bundle.ModuleEntry;
+import org.picollo.service.bundle.ModuleRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.actuate.endpoint.annotation.*;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import static java.util.Arrays.asList;
-
 /**
  * @author rod
  * @since 2019-05
@@ -35,8 +40,20 @@ public class ModulesProcessor {
    private static final String START = "start";
    private static final String STOP = "stop";
 
+   private static final String TOTAL_COUNT = "X-Total-Count";
+   private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+   private static final List<String> FIELDS = Arrays.asList("id", "name", "type", "version", "state");
+
    @Autowired
    private HttpServletRequest request;
+   @Autowired
+   private HttpServletResponse response;
+   @Autowired
+   private ModuleRegistry moduleRegistry;
+   @Autowired
+   private ModuleOperations moduleOperations;
+   @Autowired
+   private DeploymentJournal deploymentJournal;
    private static final Logger log = LoggerFactory.getLogger(ModulesProcessor.class);
    private Map<Integer, String> stateMap = Stream.of(new Object[][]{
          {1, "UNINSTALLED"},
@@ -47,41 +64,101 @@ public class ModulesProcessor {
          {32, "ACTIVE"}
       })
       .collect(Collectors.toMap(d -> (Integer) d[0], d -> (String) d[1]));
+   private volatile Listing listing;
 
+   /**
+    * Lists the installed modules. The listing is rendered once per registry generation and sent with the generation
+    * as ETag, so polling clients get a 304 while no bundle has changed.
+    * @param offset number of matching modules to skip.
+    * @param limit maximum number of modules to return.
+    * @param type Driver-Type of the modules, ignoring case.
+    * @param state bundle state of the modules, such as ACTIVE.
+    * @param prefix symbolic name prefix of the modules, ignoring case.
+    * @param fields comma separated fields to return, among id, name, type, version and state.
+    */
    @ReadOperation
-   public List<Map<String, String>> modules() {
-      List<Map<String, String>> ret = new ArrayList();
+   public WebEndpointResponse<List<Map<String, String>>> modules(@Nullable final Integer offset, @Nullable final Integer limit,
+                                                               @Nullable final String type, @Nullable final String state,
+                                                               @Nullable final String prefix, @Nullable final String fields) {
+      final long generation = moduleRegistry.generation();
+      final String etag = "\"" + EPOCH + "-" + generation + "\"";
+
+      response.setHeader(HttpHeaders.ETAG, etag);
+      if (etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+         return new WebEndpointResponse<>(HttpServletResponse.SC_NOT_MODIFIED);
+      }
+      if ((offset != null && offset < 0) || (limit != null && limit < 0)) {
+         throw new BadRequestException("Offset and limit must not be negative.");
+      }
+      final List<String> selected = fields == null ? null : Arrays.asList(fields.split(","));
+      if (selected != null && !FIELDS.containsAll(selected)) {
+         throw new BadRequestException("Fields must be among " + FIELDS + ".");
+      }
 
       log.debug("Getting installed business modules...");
-      asList(OSGiConfig.osgi.getBundleContext().getBundles())
-         .stream()
-         .forEach(bundle -> {
-            Map<String, String> item = new LinkedHashMap<>();
-            addModuleInfo(bundle, item);
-            ret.add(item);
-         });
+      final String namePrefix = prefix == null ? null : prefix.toLowerCase(Locale.ROOT);
+      final int first = offset == null ? 0 : offset;
+      final int max = limit == null ? Integer.MAX_VALUE : limit;
+      final List<Map<String, String>> ret = new ArrayList<>();
+      int total = 0;
+      for (Listed l : listing(generation)) {
+         if ((type == null || type.equalsIgnoreCase(l.module.getDriverType()))
+            && (state == null || state.equalsIgnoreCase(l.item.get("state")))
+            && (namePrefix == null || l.key.startsWith(namePrefix))) {
+            if (total >= first && ret.size() < max) {
+               ret.add(selected == null ? l.item : select(l.item, selected));
+            }
+            total++;
+         }
+      }
+      response.setHeader(TOTAL_COUNT, String.valueOf(total));
       log.debug("Finished getting installed business modules {}", ret);
+      return new WebEndpointResponse<>(ret);
+   }
+
+   private List<Listed> listing(final long generation) {
+      final Listing cached = listing;
+
+      if (cached != null && cached.generation == generation) {
+         return cached.modules;
+      }
+      final List<Listed> modules = moduleRegistry.modules().stream()
+         .map(module -> {
+            final Map<String, String> item = new LinkedHashMap<>();
+            addModuleInfo(module, item);
+            return new Listed(module, Collections.unmodifiableMap(item));
+         })
+         .collect(Collectors.toList());
+      listing = new Listing(generation, modules);
+      return modules;
+   }
+
+   private static Map<String, String> select(final Map<String, String> item, final List<String> fields) {
+      final Map<String, String> ret = new LinkedHashMap<>();
+
+      item.forEach((k, v) -> {
+         if (fields.contains(k)) {
+            ret.put(k, v);
+         }
+      });
       return ret;
    }
 
-   private void addModuleInfo(Bundle bundle, Map<String, String> item) {
-      item.put("id", String.valueOf(bundle.getBundleId()));
-      item.put("name", bundle.getSymbolicName());
-      if (bundle.getHeaders().get("Driver-Type") != null) {
-         item.put("type", bundle.getHeaders().get("Driver-Type"));
+   private void addModuleInfo(ModuleEntry module, Map<String, String> item) {
+      item.put("id", String.valueOf(module.getBundleId()));
+      item.put("name", module.getSymbolicName());
+      if (module.getDriverType() != null) {
+         item.put("type", module.getDriverType());
       }
-      item.put("version", bundle.getVersion().toString());
-      item.put("state", stateMap.get(bundle.getState()));
+      item.put("version", module.getVersion());
+      item.put("state", stateMap.get(module.getState()));
    }
 
    @ReadOperation
    public Map<String, String> module(@Selector final String name) {
       final Map<String, String> item = new LinkedHashMap<>();
 
-      asList(OSGiConfig.osgi.getBundleContext().getBundles())
-         .stream()
-         .filter(b -> b.getSymbolicName().equalsIgnoreCase(name))
-         .forEach(b -> addModuleInfo(b, item));
+      moduleRegistry.find(name).ifPresent(m -> addModuleInfo(m, item));
 
       if (item.isEmpty()) {
          throw new ItemNotFoundException("The module named " + name + " has not being found.");
@@ -92,41 +169,96 @@ public class ModulesProcessor {
    @WriteOperation
    public void moduleOps(@Selector String name) {
       log.info("Starting executing operation {} in module {}", request.getParameter("action"), name);
-      asList(OSGiConfig.osgi.getBundleContext().getBundles())
-         .stream()
-         .filter(b -> b.getSymbolicName().equalsIgnoreCase(name))
-         .findAny().ifPresent(b -> {
-            String action = request.getParameter(ACTION);
-            try {
-               switch (action) {
-                  case START:
-                     b.start();
-                     break;
-                  case STOP:
-                     b.stop();
-                     break;
-               }
-            } catch (BundleException e) {
-               log.error("Error running action {} in module {}", action, name, e);
-               throw new BadRequestException("Problems running action " + action + " in module " + name + ".", e);
+      moduleRegistry.find(name).map(ModuleEntry::getBundle).ifPresent(b -> {
+         String action = request.getParameter(ACTION);
+         try {
+            switch (action) {
+               case START:
+                  b.start();
+                  break;
+               case STOP:
+                  b.stop();
+                  break;
             }
-         });
+            deploymentJournal.installed(b, null);
+         } catch (BundleException e) {
+            log.error("Error running action {} in module {}", action, name, e);
+            throw new BadRequestException("Problems running action " + action + " in module " + name + ".", e);
+         }
+      });
       log.info("Finished executing operation {} in module {}", request.getParameter("action"), name);
    }
 
+   /**
+    * Applies a lifecycle action to several modules at once, in wiring order and in parallel where the wiring allows.
+    * The modules are given by name, or selected by a name pattern and a Driver-Type.
+    * @param action start, stop, uninstall or refresh.
+    * @param names symbolic names of the modules.
+    * @param pattern symbolic name pattern of the modules, ignoring case, where * matches any characters.
+    * @param type Driver-Type of the modules, ignoring case.
+    * @return the outcome and duration of the action on every module.
+    */
+   @WriteOperation
+   public Map<String, Object> modulesOps(final String action, @Nullable final String[] names,
+                                         @Nullable final String pattern, @Nullable final String type) {
+      final ModuleOperations.Action operation = ModuleOperations.Action.of(action);
+
+      if (operation == null) {
+         throw new BadRequestException("Action must be among " + Arrays.toString(ModuleOperations.Action.values()) + ".");
+      }
+      if ((names == null || names.length == 0) && pattern == null && type == null) {
+         throw new BadRequestException("Modules must be given by names, pattern or type.");
+      }
+      final List<ModuleEntry> modules = select(names, pattern, type);
+      final long start = System.nanoTime();
+      final List<ModuleOperations.Result> results;
+      try {
+         results = moduleOperations.apply(operation, modules);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new BadRequestException("Interrupted running action " + action + ".", e);
+      }
+
+      final Map<String, Object> ret = new LinkedHashMap<>();
+      ret.put("action", operation.name().toLowerCase(Locale.ROOT));
+      ret.put("millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      ret.put("failed", results.stream().filter(r -> !r.isSucceeded()).count());
+      ret.put("modules", results);
+      return ret;
+   }
+
+   private List<ModuleEntry> select(final String[] names, final String pattern, final String type) {
+      final List<ModuleEntry> ret = new ArrayList<>();
+
+      if (names != null && names.length > 0) {
+         for (String name : names) {
+            ret.add(moduleRegistry.find(name.trim())
+               .orElseThrow(() -> new ItemNotFoundException("The module named " + name + " has not being found.")));
+         }
+      } else {
+         final Pattern regex = pattern == null ? null
+            : Pattern.compile(Arrays.stream(pattern.split("\\*", -1)).map(Pattern::quote).collect(Collectors.joining(".*")),
+                              Pattern.CASE_INSENSITIVE);
+         for (ModuleEntry m : moduleRegistry.modules()) {
+            if (m.getSymbolicName() != null
+               && (type == null || type.equalsIgnoreCase(m.getDriverType()))
+               && (regex == null || regex.matcher(m.getSymbolicName()).matches())) {
+               ret.add(m);
+            }
+         }
+      }
+      ret.removeIf(m -> m.getBundleId() == 0);
+      return ret;
+   }
+
    @DeleteOperation
    public void moduleUninstall(@Selector String name) {
-      Optional<Bundle> bundle = asList(OSGiConfig.osgi.getBundleContext().getBundles())
-         .stream()
-         .filter(b -> b.getSymbolicName().equalsIgnoreCase(name))
-         .findAny();
+      Optional<Bundle> bundle = moduleRegistry.find(name).map(ModuleEntry::getBundle);
 
       if (bundle.isPresent()) {
          Bundle b = bundle.get();
          try {
-            b.stop();
-            b.uninstall();
-            Files.delete(Paths.get(b.getLocation().substring(7)));
+            moduleOperations.uninstall(b);
          } catch (BundleException e) {
             throw new BadRequestException("Problems stopping module " + name + ".", e);
          } catch (IOException e) {
@@ -134,4 +266,26 @@ public class ModulesProcessor {
          }
       }
    }
+
+   private static final class Listed {
+      private final ModuleEntry module;
+      private final Map<String, String> item;
+      private final String key;
+
+      private Listed(final ModuleEntry module, final Map<String, String> item) {
+         this.module = module;
+         this.item = item;
+         this.key = module.getSymbolicName() == null ? "" : module.getSymbolicName().toLowerCase(Locale.ROOT);
+      }
+   }
+
+   private static final class Listing {
+      private final long generation;
+      private final List<Listed> modules;
+
+      private Listing(final long generation, final List<Listed> modules) {
+         this.generation = generation;
+         this.modules = modules;
+      }
+   }
 }
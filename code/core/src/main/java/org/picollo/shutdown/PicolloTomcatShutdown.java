@@ -9,6 +9,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.catalina.connector.Connector;
 import org.springframework.boot.web.embedded.tomcat.TomcatConnectorCustomizer;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextClosedEvent;
 import java.util.concurrent.Executor;
@@ -16,11 +17,14 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
+ * Pauses the connector, stops the modules through the {@link ShutdownCoordinator} when available, then stops the
+ * OSGi container and waits for the Tomcat pool to finish the running requests.
  * @author rod
  * @since 2019-05
  */
 public class PicolloTomcatShutdown implements TomcatConnectorCustomizer, ApplicationListener<ContextClosedEvent> {
     private static final Logger log = LoggerFactory.getLogger(PicolloTomcatShutdown.class);
+    private static final String CONNECTOR_TIMEOUT = "application.shutdown.connector-timeout";
     private volatile Connector connector;
 
     @Override
@@ -30,7 +34,11 @@ public class PicolloTomcatShutdown implements TomcatConnectorCustomizer, Applica
 
     @Override
     public void onApplicationEvent(ContextClosedEvent event) {
+        final ApplicationContext context = event.getApplicationContext();
+        final long connectorTimeout = context.getEnvironment().getProperty(CONNECTOR_TIMEOUT, Long.class, 30000L);
+
         this.connector.pause();
+        context.getBeanProvider(ShutdownCoordinator.class).ifAvailable(ShutdownCoordinator::stopModules);
         try {
             log.error("Shutting down OSGI container...");
             OSGiConfig.osgi.getBundleContext().getBundle(0).stop();
@@ -43,9 +51,9 @@ public class PicolloTomcatShutdown implements TomcatConnectorCustomizer, Applica
             try {
                 ThreadPoolExecutor threadPoolExecutor = (ThreadPoolExecutor) executor;
                 threadPoolExecutor.shutdown();
-                if (!threadPoolExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                if (!threadPoolExecutor.awaitTermination(connectorTimeout, TimeUnit.MILLISECONDS)) {
                     log.warn("Tomcat thread pool did not shut down gracefully within "
-                            + "30 seconds. Proceeding with forceful shutdown");
+                            + connectorTimeout + " ms. Proceeding with forceful shutdown");
                 }
             } catch (InterruptedException ex) {
                 Thread.currentThread().interrupt();
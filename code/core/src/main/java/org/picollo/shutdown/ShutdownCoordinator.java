@@ -0,0 +1,163 @@
+/*
+ * ShutdownCoordinator.java
+ */
+package org.picollo.shutdown;
+
+import org.osgi.framework.Bundle;
+import org.picollo.context.PicolloContext;
+import org.picollo.driver.DriverInterface;
+import org.picollo.driver.DriverType;
+import org.picollo.service.BundleDrainer;
+import org.picollo.service.Deployer;
+import org.picollo.service.DeploymentMetrics;
+import org.picollo.service.bundle.ModuleEntry;
+import org.picollo.service.bundle.ModuleRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Stops the running modules before the OSGi container goes down. Deployments are suspended first so no module is
+ * installed or started meanwhile. Modules are then stopped in tiers by Driver-Type: Custom modules first, then
+ * Service and Core modules, and last the modules without a driver. The modules of a tier are stopped in parallel,
+ * and each one is given the drain deadline to stop and let its driver finish running; a module still stopping at
+ * the deadline is interrupted and left behind so the shutdown goes on.
+ * @author rod
+ * @since 2026-10
+ */
+@Component
+public class ShutdownCoordinator {
+    private static final Logger log = LoggerFactory.getLogger(ShutdownCoordinator.class);
+    private static final String NO_TYPE = "none";
+    private static final List<String> TIERS = Arrays.asList(DriverType.Custom.name(), DriverType.Service.name(),
+        DriverType.Core.name());
+    @Value("${application.shutdown.drain-timeout:10000}")
+    private long drainTimeout;
+    @Autowired
+    private ModuleRegistry moduleRegistry;
+    @Autowired
+    private DeploymentMetrics deploymentMetrics;
+    @Autowired
+    private Deployer deployer;
+
+    /**
+     * Suspends the deployments and stops the running modules tier by tier.
+     */
+    public void stopModules() {
+        deployer.suspend();
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("picollo-shutdown-");
+        threadFactory.setDaemon(true);
+        final ExecutorService executor = Executors.newCachedThreadPool(threadFactory);
+
+        try {
+            for (List<ModuleEntry> tier : tiers()) {
+                stop(tier, executor);
+            }
+        } catch (InterruptedException e) {
+            log.warn("Interrupted stopping the modules, proceeding with the shutdown.");
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<List<ModuleEntry>> tiers() {
+        final Map<Integer, List<ModuleEntry>> ret = new TreeMap<>();
+
+        for (ModuleEntry m : moduleRegistry.modules()) {
+            if (m.getBundleId() != 0 && (m.getState() == Bundle.ACTIVE || m.getState() == Bundle.STARTING)) {
+                ret.computeIfAbsent(tier(m.getDriverType()), t -> new ArrayList<>()).add(m);
+            }
+        }
+        return new ArrayList<>(ret.values());
+    }
+
+    private static int tier(final String driverType) {
+        for (int i = 0; i < TIERS.size(); i++) {
+            if (TIERS.get(i).equalsIgnoreCase(driverType)) {
+                return i;
+            }
+        }
+        return TIERS.size();
+    }
+
+    /**
+     * @return the type of the tier of the module, none for the last tier.
+     */
+    private static String label(final ModuleEntry module) {
+        final int tier = tier(module.getDriverType());
+        return tier < TIERS.size() ? TIERS.get(tier) : NO_TYPE;
+    }
+
+    private void stop(final List<ModuleEntry> tier, final ExecutorService executor) throws InterruptedException {
+        final long started = System.nanoTime();
+        final long deadline = started + TimeUnit.MILLISECONDS.toNanos(drainTimeout);
+        final List<Future<Stopped>> pending = new ArrayList<>();
+
+        log.info("Stopping {} modules of type {}", tier.size(), label(tier.get(0)));
+        for (ModuleEntry m : tier) {
+            pending.add(executor.submit(() -> stop(m, deadline)));
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            final ModuleEntry m = tier.get(i);
+            Duration duration;
+            String outcome;
+            try {
+                final Stopped stopped = pending.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                duration = stopped.duration;
+                outcome = stopped.drained ? "stopped" : "forced";
+            } catch (TimeoutException e) {
+                pending.get(i).cancel(true);
+                duration = Duration.ofNanos(System.nanoTime() - started);
+                outcome = "forced";
+            } catch (ExecutionException e) {
+                log.error("Error stopping module {}", m.getSymbolicName(), e.getCause());
+                duration = Duration.ofNanos(System.nanoTime() - started);
+                outcome = "failed";
+            }
+            if ("stopped".equals(outcome)) {
+                log.info("Module {} stopped in {} ms", m.getSymbolicName(), duration.toMillis());
+            } else {
+                log.warn("Module {} not stopped gracefully in {} ms, outcome {}", m.getSymbolicName(), duration.toMillis(), outcome);
+            }
+            deploymentMetrics.stopped(duration, m.getSymbolicName(), m.getDriverType(), outcome);
+        }
+    }
+
+    private static Stopped stop(final ModuleEntry module, final long deadline) throws Exception {
+        final long started = System.nanoTime();
+        final Optional<DriverInterface> driver = PicolloContext.getDriver(module.getSymbolicName());
+
+        module.getBundle().stop();
+        final boolean drained = !driver.isPresent()
+            || BundleDrainer.awaitIdle(driver.get(), TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+        return new Stopped(Duration.ofNanos(System.nanoTime() - started), drained);
+    }
+
+    private static final class Stopped {
+        private final Duration duration;
+        private final boolean drained;
+
+        private Stopped(final Duration duration, final boolean drained) {
+            this.duration = duration;
+            this.drained = drained;
+        }
+    }
+}
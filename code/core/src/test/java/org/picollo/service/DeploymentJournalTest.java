@@ -0,0 +1,211 @@
+/*
+ * DeploymentJournalTest.java
+ */
+package org.picollo.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Version;
+import org.osgi.framework.startlevel.BundleStartLevel;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author rod
+ * @since 2026-10
+ */
+class DeploymentJournalTest {
+    private static final String SHA_1 = "a1";
+    private static final String SHA_2 = "b2";
+    @TempDir
+    Path dir;
+    private DeploymentJournal journal;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (journal != null) {
+            journal.finish();
+        }
+    }
+
+    @Test
+    void recordsAreReadBackAfterRestart() throws IOException {
+        journal = open();
+        journal.installed(bundle("org.picollo.a", "1.0.0", Bundle.ACTIVE, 3), SHA_1);
+        journal.swapping(bundle("org.picollo.b", "2.0.0", Bundle.RESOLVED, 0), null);
+
+        final List<DeploymentJournal.Entry> entries = reopen().entries();
+        assertEquals(2, entries.size());
+        final DeploymentJournal.Entry a = entries.get(0);
+        assertEquals(DeploymentJournal.Type.INSTALL, a.getType());
+        assertEquals("org.picollo.a", a.getSymbolicName());
+        assertEquals("1.0.0", a.getVersion());
+        assertEquals(SHA_1, a.getSha256());
+        assertEquals("file:/modules/org.picollo.a.jar", a.getLocation());
+        assertEquals(3, a.getStartLevel());
+        assertEquals(Bundle.ACTIVE, a.getState());
+        final DeploymentJournal.Entry b = entries.get(1);
+        assertEquals(DeploymentJournal.Type.SWAP, b.getType());
+        assertNull(b.getSha256());
+        assertEquals(0, b.getStartLevel());
+        assertEquals(Bundle.RESOLVED, b.getState());
+    }
+
+    @Test
+    void lastRecordOfAModuleWins() throws IOException {
+        journal = open();
+        journal.installed(bundle("org.picollo.a", "1.0.0", Bundle.ACTIVE, 1), SHA_1);
+        journal.installed(bundle("ORG.PICOLLO.A", "1.1.0", Bundle.RESOLVED, 1), null);
+
+        final List<DeploymentJournal.Entry> entries = reopen().entries();
+        assertEquals(1, entries.size());
+        assertEquals("1.1.0", entries.get(0).getVersion());
+        assertEquals(SHA_1, entries.get(0).getSha256(), "a null digest keeps the recorded one");
+        assertEquals(Bundle.RESOLVED, entries.get(0).getState());
+    }
+
+    @Test
+    void lazyModuleIsRecordedInTheGivenState() throws IOException {
+        journal = open();
+        journal.installed(bundle("org.picollo.a", "1.0.0", Bundle.STARTING, 1), SHA_1, Bundle.ACTIVE);
+
+        assertEquals(Bundle.ACTIVE, reopen().entries().get(0).getState());
+    }
+
+    @Test
+    void tornRecordIsDroppedAndOverwritten() throws IOException {
+        journal = open();
+        journal.installed(bundle("org.picollo.a", "1.0.0", Bundle.ACTIVE, 1), SHA_1);
+        final long torn = end();
+        journal.installed(bundle("org.picollo.b", "1.0.0", Bundle.ACTIVE, 1), SHA_2);
+        journal.finish();
+        journal = null;
+        // Flip a byte of the second record text, as a crash in the middle of its write would leave it
+        corrupt(torn + 2 * Integer.BYTES + 1);
+
+        journal = open();
+        List<DeploymentJournal.Entry> entries = journal.entries();
+        assertEquals(1, entries.size());
+        assertEquals("org.picollo.a", entries.get(0).getSymbolicName());
+
+        journal.installed(bundle("org.picollo.c", "1.0.0", Bundle.ACTIVE, 1), SHA_2);
+        entries = reopen().entries();
+        assertEquals(2, entries.size());
+        assertEquals("org.picollo.c", entries.get(1).getSymbolicName());
+    }
+
+    @Test
+    void recordLongerThanTheJournalStopsTheRead() throws IOException {
+        journal = open();
+        journal.installed(bundle("org.picollo.a", "1.0.0", Bundle.ACTIVE, 1), SHA_1);
+        final long torn = end();
+        journal.finish();
+        journal = null;
+        try (FileChannel channel = FileChannel.open(file(), StandardOpenOption.WRITE)) {
+            channel.write((ByteBuffer) ByteBuffer.allocate(Integer.BYTES).putInt(Integer.MAX_VALUE).flip(), torn);
+        }
+
+        journal = open();
+        assertEquals(1, journal.entries().size());
+    }
+
+    @Test
+    void compactionKeepsTheLastRecordOfTheDeployedModules() throws IOException {
+        journal = open();
+        journal.installed(bundle("org.picollo.a", "1.0.0", Bundle.ACTIVE, 1), SHA_1);
+        journal.installed(bundle("org.picollo.b", "1.0.0", Bundle.ACTIVE, 1), SHA_1);
+        journal.installed(bundle("org.picollo.b", "2.0.0", Bundle.ACTIVE, 1), SHA_2);
+        journal.uninstalled(bundle("org.picollo.a", "1.0.0", Bundle.UNINSTALLED, 1));
+
+        journal.compact();
+        assertEquals(1, journal.entries().size());
+        journal.installed(bundle("org.picollo.c", "1.0.0", Bundle.ACTIVE, 1), SHA_1);
+
+        final List<DeploymentJournal.Entry> entries = reopen().entries();
+        assertEquals(2, entries.size());
+        assertEquals("org.picollo.b", entries.get(0).getSymbolicName());
+        assertEquals("2.0.0", entries.get(0).getVersion());
+        assertEquals("org.picollo.c", entries.get(1).getSymbolicName());
+        assertEquals(2, records(), "the compacted journal holds one record per module");
+    }
+
+    private DeploymentJournal open() throws IOException {
+        final DeploymentJournal ret = new DeploymentJournal();
+
+        ReflectionTestUtils.setField(ret, "journalFile", file().toString());
+        ret.init();
+        return ret;
+    }
+
+    private DeploymentJournal reopen() throws IOException {
+        journal.finish();
+        journal = open();
+        return journal;
+    }
+
+    private Path file() {
+        return dir.resolve("deployments.journal");
+    }
+
+    /**
+     * @return the offset after the last record appended.
+     */
+    private long end() {
+        return ((ByteBuffer) ReflectionTestUtils.getField(journal, "buffer")).position();
+    }
+
+    private int records() throws IOException {
+        int ret = 0;
+
+        try (FileChannel channel = FileChannel.open(file(), StandardOpenOption.READ)) {
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            while (buffer.remaining() >= 2 * Integer.BYTES) {
+                final int length = buffer.getInt();
+                if (length <= 0) {
+                    break;
+                }
+                buffer.position(buffer.position() + Integer.BYTES + length);
+                ret++;
+            }
+        }
+        return ret;
+    }
+
+    private void corrupt(final long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, position);
+            one.put(0, (byte) (one.get(0) ^ 0xff));
+            one.rewind();
+            channel.write(one, position);
+        }
+    }
+
+    private static Bundle bundle(final String symbolicName, final String version, final int state, final int startLevel) {
+        final Bundle ret = mock(Bundle.class);
+
+        when(ret.getSymbolicName()).thenReturn(symbolicName);
+        when(ret.getVersion()).thenReturn(Version.parseVersion(version));
+        when(ret.getState()).thenReturn(state);
+        when(ret.getLocation()).thenReturn("file:/modules/" + symbolicName + ".jar");
+        if (startLevel > 0) {
+            final BundleStartLevel level = mock(BundleStartLevel.class);
+            when(level.getStartLevel()).thenReturn(startLevel);
+            when(ret.adapt(BundleStartLevel.class)).thenReturn(level);
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * DeploymentPlanTest.java
+ */
+package org.picollo.service;
+
+import org.junit.jupiter.api.Test;
+import org.osgi.framework.Constants;
+import org.picollo.service.bundle.BundleDescriptor;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author rod
+ * @since 2026-10
+ */
+class DeploymentPlanTest {
+
+    @Test
+    void independentItemsFormOneWave() {
+        assertEquals(Collections.singletonList(Arrays.asList("a", "b", "c")),
+            DeploymentPlan.waves(Arrays.asList("a", "b", "c"), i -> Collections.emptyList()));
+    }
+
+    @Test
+    void dependenciesComeInEarlierWaves() {
+        final Map<String, Collection<String>> dependencies = new HashMap<>();
+        dependencies.put("app", Arrays.asList("api", "impl"));
+        dependencies.put("impl", Collections.singletonList("api"));
+
+        assertEquals(Arrays.asList(Collections.singletonList("api"), Collections.singletonList("impl"), Collections.singletonList("app")),
+            DeploymentPlan.waves(Arrays.asList("app", "impl", "api"), i -> dependencies.getOrDefault(i, Collections.emptyList())));
+    }
+
+    @Test
+    void selfAndOutsideDependenciesAreIgnored() {
+        final Map<String, Collection<String>> dependencies = new HashMap<>();
+        dependencies.put("a", Arrays.asList("a", "installed"));
+
+        assertEquals(Collections.singletonList(Arrays.asList("a", "b")),
+            DeploymentPlan.waves(Arrays.asList("a", "b"), i -> dependencies.getOrDefault(i, Collections.emptyList())));
+    }
+
+    @Test
+    void cycleIsPlacedTogetherInTheLastWave() {
+        final Map<String, Collection<String>> dependencies = new HashMap<>();
+        dependencies.put("a", Collections.singletonList("b"));
+        dependencies.put("b", Collections.singletonList("c"));
+        dependencies.put("c", Arrays.asList("a", "base"));
+
+        assertEquals(Arrays.asList(Arrays.asList("base", "free"), Arrays.asList("a", "b", "c")),
+            DeploymentPlan.waves(Arrays.asList("a", "base", "b", "free", "c"),
+                i -> dependencies.getOrDefault(i, Collections.emptyList())));
+    }
+
+    @Test
+    void itemsDependingOnACycleJoinIt() {
+        final Map<String, Collection<String>> dependencies = new HashMap<>();
+        dependencies.put("a", Collections.singletonList("b"));
+        dependencies.put("b", Collections.singletonList("a"));
+        dependencies.put("c", Collections.singletonList("a"));
+
+        assertEquals(Collections.singletonList(Arrays.asList("a", "b", "c")),
+            DeploymentPlan.waves(Arrays.asList("a", "b", "c"), i -> dependencies.getOrDefault(i, Collections.emptyList())));
+    }
+
+    @Test
+    void modulesAreOrderedByImportsAndRequiredBundles() {
+        final ModuleDeployment api = module("org.picollo.api", "org.picollo.api", null, null);
+        final ModuleDeployment impl = module("org.picollo.impl", "org.picollo.impl", "org.picollo.api;version=\"[1,2)\"", null);
+        final ModuleDeployment app = module("org.picollo.app", null, "org.osgi.framework", "org.picollo.impl;resolution:=optional");
+
+        final List<List<ModuleDeployment>> waves = DeploymentPlan.waves(Arrays.asList(app, impl, api));
+        assertEquals(Arrays.asList(Collections.singletonList(api), Collections.singletonList(impl), Collections.singletonList(app)), waves);
+    }
+
+    @Test
+    void modulesImportingEachOtherShareTheLastWave() {
+        final ModuleDeployment a = module("org.picollo.a", "org.picollo.a", "org.picollo.b", null);
+        final ModuleDeployment b = module("org.picollo.b", "org.picollo.b", "org.picollo.a", null);
+        final ModuleDeployment c = module("org.picollo.c", null, null, null);
+
+        assertEquals(Arrays.asList(Collections.singletonList(c), Arrays.asList(a, b)), DeploymentPlan.waves(Arrays.asList(a, b, c)));
+    }
+
+    private static ModuleDeployment module(final String symbolicName, final String exportPackage,
+                                           final String importPackage, final String requireBundle) {
+        final Manifest manifest = new Manifest();
+        final Attributes attributes = manifest.getMainAttributes();
+
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.putValue(Constants.BUNDLE_SYMBOLICNAME, symbolicName);
+        attributes.putValue(Constants.BUNDLE_VERSION, "1.0.0");
+        if (exportPackage != null) {
+            attributes.putValue(Constants.EXPORT_PACKAGE, exportPackage);
+        }
+        if (importPackage != null) {
+            attributes.putValue(Constants.IMPORT_PACKAGE, importPackage);
+        }
+        if (requireBundle != null) {
+            attributes.putValue(Constants.REQUIRE_BUNDLE, requireBundle);
+        }
+        return new ModuleDeployment(Paths.get(symbolicName + ".jar"), null, BundleDescriptor.of(manifest), null, null);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * ModuleExecutorsTest.java
+ */
+package org.picollo.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.ServiceRegistration;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collection;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author rod
+ * @since 2026-10
+ */
+class ModuleExecutorsTest {
+    private static final String MODULE = "org.picollo.module";
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Map<Long, ExecutorService> executors = new ConcurrentHashMap<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ModuleExecutors moduleExecutors;
+
+    @BeforeEach
+    void setUp() {
+        moduleExecutors = new ModuleExecutors();
+        ReflectionTestUtils.setField(moduleExecutors, "defaultThreads", 4);
+        ReflectionTestUtils.setField(moduleExecutors, "defaultQueue", 8);
+        ReflectionTestUtils.setField(moduleExecutors, "rejection", "abort");
+        ReflectionTestUtils.setField(moduleExecutors, "drainTimeout", 10000L);
+        ReflectionTestUtils.setField(moduleExecutors, "meterRegistry", meterRegistry);
+        moduleExecutors.init();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        moduleExecutors.finish();
+    }
+
+    @Test
+    void swappedModuleReportsItsNewExecutor() throws InterruptedException {
+        final Bundle previous = bundle(1);
+        final Bundle next = bundle(2);
+
+        moduleExecutors.bundleChanged(new BundleEvent(BundleEvent.STARTING, previous));
+        block(executors.get(1L), 1);
+        // The new version starts before the previous one stops, the previous one drains its task afterwards
+        moduleExecutors.bundleChanged(new BundleEvent(BundleEvent.STARTING, next));
+        moduleExecutors.bundleChanged(new BundleEvent(BundleEvent.STOPPED, previous));
+        block(executors.get(2L), 2);
+
+        assertEquals(2.0, active().value());
+        assertEquals("2", active().getId().getTag("bundle"));
+    }
+
+    @Test
+    void restartedModuleReportsItsNewExecutor() throws InterruptedException {
+        final Bundle bundle = bundle(1);
+
+        moduleExecutors.bundleChanged(new BundleEvent(BundleEvent.STARTING, bundle));
+        final ExecutorService stopped = executors.get(1L);
+        block(stopped, 1);
+        moduleExecutors.bundleChanged(new BundleEvent(BundleEvent.STOPPED, bundle));
+        assertTrue(meterRegistry.find("picollo.module.executor.active").gauges().isEmpty());
+
+        moduleExecutors.bundleChanged(new BundleEvent(BundleEvent.STARTING, bundle));
+        block(executors.get(1L), 2);
+        assertEquals(2.0, active().value());
+
+        release.countDown();
+        assertTrue(stopped.awaitTermination(5, TimeUnit.SECONDS));
+        active();
+        assertEquals(1, meterRegistry.find("picollo.module.executor.queued").gauges().size(), "the drain keeps the meters of the restarted module");
+    }
+
+    /**
+     * @return the only active threads gauge of the module.
+     */
+    private Gauge active() {
+        final Collection<Gauge> gauges = meterRegistry.find("picollo.module.executor.active").tag("module", MODULE).gauges();
+
+        assertEquals(1, gauges.size());
+        return gauges.iterator().next();
+    }
+
+    /**
+     * Runs tasks on the executor which wait for the end of the test.
+     */
+    private void block(final ExecutorService executor, final int tasks) throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(tasks);
+
+        for (int i = 0; i < tasks; i++) {
+            executor.execute(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Bundle bundle(final long id) {
+        final Bundle ret = mock(Bundle.class);
+        final BundleContext context = mock(BundleContext.class);
+
+        when(ret.getBundleId()).thenReturn(id);
+        when(ret.getSymbolicName()).thenReturn(MODULE);
+        when(ret.getBundleContext()).thenReturn(context);
+        when(ret.getHeaders()).thenReturn(new Hashtable<>());
+        when(context.registerService(eq(ExecutorService.class), any(ExecutorService.class), any(Dictionary.class)))
+            .thenAnswer(invocation -> {
+                executors.put(id, invocation.getArgument(1));
+                return mock(ServiceRegistration.class);
+            });
+        return ret;
+    }
+}
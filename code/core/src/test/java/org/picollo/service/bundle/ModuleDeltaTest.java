@@ -0,0 +1,158 @@
+/*
+ * ModuleDeltaTest.java
+ */
+package org.picollo.service.bundle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author rod
+ * @since 2026-10
+ */
+class ModuleDeltaTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void identicalModuleIsOneCopy() throws IOException {
+        final byte[] base = random(1, 10 * ModuleDelta.BLOCK + 17);
+
+        final byte[] delta = roundTrip(base, base);
+        assertTrue(delta.length < 16, "delta of " + delta.length + " bytes");
+    }
+
+    @Test
+    void movedAndEditedBlocksAreCopied() throws IOException {
+        final byte[] base = random(2, 32 * ModuleDelta.BLOCK);
+        final byte[] target = new byte[base.length + 100];
+        // Second half first, shifted by a few inserted bytes, then the first half with one byte changed
+        System.arraycopy(base, base.length / 2, target, 0, base.length / 2);
+        System.arraycopy(random(3, 100), 0, target, base.length / 2, 100);
+        System.arraycopy(base, 0, target, base.length / 2 + 100, base.length / 2);
+        target[target.length - 3 * ModuleDelta.BLOCK] ^= 0x55;
+
+        final byte[] delta = roundTrip(base, target);
+        assertTrue(delta.length < 4 * ModuleDelta.BLOCK, "delta of " + delta.length + " bytes");
+    }
+
+    @Test
+    void unrelatedAndSmallModulesRoundTrip() throws IOException {
+        roundTrip(random(4, 5000), random(5, 7000));
+        roundTrip(random(6, 10), random(7, 20));
+        roundTrip(new byte[0], random(8, 3000));
+        roundTrip(random(9, 3000), new byte[0]);
+    }
+
+    @Test
+    void invalidMagicIsRejected() throws IOException {
+        final Path base = write("base", random(1, 100));
+
+        assertThrows(IOException.class, () -> ModuleDelta.apply(base, new ByteArrayInputStream("XXXX".getBytes())));
+    }
+
+    @Test
+    void deltaAgainstAnotherBaseIsRejected() throws IOException {
+        final byte[] delta = diff(random(1, 5000), random(2, 5000));
+        final Path other = write("other", random(1, 4999));
+
+        assertThrows(IOException.class, () -> ModuleDelta.apply(other, new ByteArrayInputStream(delta)));
+    }
+
+    @Test
+    void truncatedDeltaFailsTheRead() throws IOException {
+        final byte[] base = random(1, 8 * ModuleDelta.BLOCK);
+        final byte[] target = Arrays.copyOf(base, base.length + 500);
+        final byte[] delta = diff(base, target);
+
+        for (int length = 5; length < delta.length; length += 7) {
+            final byte[] truncated = Arrays.copyOf(delta, length);
+            assertThrows(IOException.class, () -> readAll(ModuleDelta.apply(write("base", base), new ByteArrayInputStream(truncated))),
+                "delta truncated to " + length + " bytes");
+        }
+    }
+
+    @Test
+    void copyBeyondTheBaseIsRejected() throws IOException {
+        final Path base = write("base", random(1, 100));
+        // PMD1, base size 100, size 50, COPY 80 50, END
+        final byte[] delta = {'P', 'M', 'D', '1', 100, 50, 1, 80, 50, 0};
+
+        assertThrows(IOException.class, () -> readAll(ModuleDelta.apply(base, new ByteArrayInputStream(delta))));
+    }
+
+    @Test
+    void deltaProducingAnotherSizeIsRejected() throws IOException {
+        final Path base = write("base", random(1, 100));
+        // PMD1, base size 100, size 20, ADD 30 bytes, END
+        final byte[] longer = new byte[6 + 2 + 30 + 1];
+        System.arraycopy(new byte[]{'P', 'M', 'D', '1', 100, 20, 2, 30}, 0, longer, 0, 8);
+        // PMD1, base size 100, size 20, COPY 0 10, END
+        final byte[] shorter = {'P', 'M', 'D', '1', 100, 20, 1, 0, 10, 0};
+
+        assertThrows(IOException.class, () -> readAll(ModuleDelta.apply(base, new ByteArrayInputStream(longer))));
+        assertThrows(IOException.class, () -> readAll(ModuleDelta.apply(base, new ByteArrayInputStream(shorter))));
+    }
+
+    @Test
+    void unknownOperationIsRejected() throws IOException {
+        final Path base = write("base", random(1, 100));
+        final byte[] delta = {'P', 'M', 'D', '1', 100, 20, 9, 0};
+
+        assertThrows(IOException.class, () -> readAll(ModuleDelta.apply(base, new ByteArrayInputStream(delta))));
+    }
+
+    /**
+     * Diffs and applies, checking the module is rebuilt.
+     * @return the delta.
+     */
+    private byte[] roundTrip(final byte[] base, final byte[] target) throws IOException {
+        final byte[] delta = diff(base, target);
+
+        try (InputStream in = ModuleDelta.apply(write("base", base), new ByteArrayInputStream(delta))) {
+            assertArrayEquals(target, readAll(in));
+        }
+        return delta;
+    }
+
+    private byte[] diff(final byte[] base, final byte[] target) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ModuleDelta.diff(write("base", base), write("target", target), out);
+        return out.toByteArray();
+    }
+
+    private Path write(final String name, final byte[] content) throws IOException {
+        return Files.write(dir.resolve(name), content);
+    }
+
+    private static byte[] readAll(final InputStream in) throws IOException {
+        final ByteArrayOutputStream ret = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[777];
+
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            ret.write(buffer, 0, n);
+        }
+        return ret.toByteArray();
+    }
+
+    private static byte[] random(final long seed, final int length) {
+        final byte[] ret = new byte[length];
+
+        new Random(seed).nextBytes(ret);
+        return ret;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * FileResponsesTest.java
+ */
+package org.picollo.service.rest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * @author rod
+ * @since 2026-10
+ */
+class FileResponsesTest {
+   private static final String ETAG = "0123abcd";
+   private static final long LAST_MODIFIED = 1_700_000_000_000L;
+   private static final String CONTENT_TYPE = "application/java-archive";
+   @TempDir
+   Path dir;
+   private Path file;
+   private byte[] content;
+
+   @BeforeEach
+   void setUp() throws IOException {
+      content = new byte[100];
+      for (int i = 0; i < content.length; i++) {
+         content[i] = (byte) i;
+      }
+      file = Files.write(dir.resolve("module.jar"), content);
+   }
+
+   @Test
+   void wholeFileWithoutRange() throws IOException {
+      final MockHttpServletResponse response = send(request());
+
+      assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+      assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+      assertEquals("\"" + ETAG + "\"", response.getHeader(HttpHeaders.ETAG));
+      assertEquals(CONTENT_TYPE, response.getContentType());
+      assertEquals(100, response.getContentLengthLong());
+      assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+      assertArrayEquals(content, response.getContentAsByteArray());
+   }
+
+   @Test
+   void singleRangeIsPartialContent() throws IOException {
+      final MockHttpServletRequest request = request();
+      request.addHeader(HttpHeaders.RANGE, "bytes=10-19");
+
+      assertPartial(send(request), 10, 20);
+   }
+
+   @Test
+   void openAndSuffixRanges() throws IOException {
+      final MockHttpServletRequest open = request();
+      open.addHeader(HttpHeaders.RANGE, "bytes=90-");
+      final MockHttpServletRequest suffix = request();
+      suffix.addHeader(HttpHeaders.RANGE, "bytes=-5");
+      final MockHttpServletRequest beyond = request();
+      beyond.addHeader(HttpHeaders.RANGE, "bytes=95-500");
+
+      assertPartial(send(open), 90, 100);
+      assertPartial(send(suffix), 95, 100);
+      assertPartial(send(beyond), 95, 100);
+   }
+
+   @Test
+   void multipleRangesAreAnsweredWithTheWholeFile() throws IOException {
+      final MockHttpServletRequest request = request();
+      request.addHeader(HttpHeaders.RANGE, "bytes=0-9,20-29");
+
+      final MockHttpServletResponse response = send(request);
+      assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+      assertArrayEquals(content, response.getContentAsByteArray());
+   }
+
+   @Test
+   void ifRangeMatchingTheEtagIsPartialContent() throws IOException {
+      final MockHttpServletRequest request = request();
+      request.addHeader(HttpHeaders.RANGE, "bytes=10-19");
+      request.addHeader(HttpHeaders.IF_RANGE, "\"" + ETAG + "\"");
+
+      assertPartial(send(request), 10, 20);
+   }
+
+   @Test
+   void staleIfRangeIsAnsweredWithTheWholeFile() throws IOException {
+      final MockHttpServletRequest stale = request();
+      stale.addHeader(HttpHeaders.RANGE, "bytes=10-19");
+      stale.addHeader(HttpHeaders.IF_RANGE, "\"ffff0000\"");
+      final MockHttpServletRequest date = request();
+      date.addHeader(HttpHeaders.RANGE, "bytes=10-19");
+      date.addHeader(HttpHeaders.IF_RANGE, "Tue, 14 Nov 2023 22:13:20 GMT");
+
+      for (MockHttpServletRequest request : Arrays.asList(stale, date)) {
+         final MockHttpServletResponse response = send(request);
+         assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+         assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+         assertArrayEquals(content, response.getContentAsByteArray());
+      }
+   }
+
+   @Test
+   void unsatisfiableRangeIs416() throws IOException {
+      final MockHttpServletRequest request = request();
+      request.addHeader(HttpHeaders.RANGE, "bytes=100-");
+
+      final MockHttpServletResponse response = send(request);
+      assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatus());
+      assertEquals("bytes */100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+      assertEquals(0, response.getContentAsByteArray().length);
+   }
+
+   @Test
+   void malformedRangeIs416() throws IOException {
+      final MockHttpServletRequest request = request();
+      request.addHeader(HttpHeaders.RANGE, "bytes=20-10");
+
+      final MockHttpServletResponse response = send(request);
+      assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatus());
+      assertEquals("bytes */100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+   }
+
+   @Test
+   void matchingIfNoneMatchIsNotModified() throws IOException {
+      final MockHttpServletRequest request = request();
+      request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"" + ETAG + "\"");
+      request.addHeader(HttpHeaders.RANGE, "bytes=10-19");
+
+      final MockHttpServletResponse response = send(request);
+      assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+      assertEquals(0, response.getContentAsByteArray().length);
+   }
+
+   @Test
+   void rangeIsHandedToSendfile() throws IOException {
+      final MockHttpServletRequest request = request();
+      request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+      request.addHeader(HttpHeaders.RANGE, "bytes=10-19");
+
+      final MockHttpServletResponse response = send(request);
+      assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+      assertEquals(file.toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+      assertEquals(10L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+      assertEquals(20L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+      assertEquals(0, response.getContentAsByteArray().length);
+   }
+
+   private void assertPartial(final MockHttpServletResponse response, final int start, final int end) {
+      assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+      assertEquals("bytes " + start + "-" + (end - 1) + "/100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+      assertEquals(end - start, response.getContentLengthLong());
+      assertArrayEquals(Arrays.copyOfRange(content, start, end), response.getContentAsByteArray());
+   }
+
+   private MockHttpServletResponse send(final MockHttpServletRequest request) throws IOException {
+      final MockHttpServletResponse ret = new MockHttpServletResponse();
+
+      FileResponses.send(file, ETAG, LAST_MODIFIED, CONTENT_TYPE, request, ret);
+      return ret;
+   }
+
+   private static MockHttpServletRequest request() {
+      return new MockHttpServletRequest("GET", "/modules/module.jar");
+   }
+}